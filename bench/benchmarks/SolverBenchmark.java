@@ -0,0 +1,339 @@
+/**
+ * Mesures JMH des chemins critiques du solveur: developpement d'un Parking (expand, addNextParkings),
+ * construction du masque d'occupation (isSolved, qui remplace setMatrix/clearMatrix), insertion des
+ * cles dans l'ensemble des Parkings generes (ou de leurs rangs dans un StateBitmap), lecture des fichiers et resolution complete de chaque
+ * exemple. Les classes du solveur etant dans le paquetage par defaut, qu'un paquetage nomme ne peut
+ * pas importer (et JMH refuse les mesures hors d'un paquetage nomme), elles sont appelees par des
+ * MethodHandle resolus une fois.
+ * Lancement: make bench JMH_CLASSPATH=... (le profileur gc donne le taux d'allocation)
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+package benchmarks;
+
+import java.io.File; //fichiers des exemples
+import java.lang.invoke.MethodHandle; //appels vers le paquetage par defaut
+import java.lang.invoke.MethodHandles; //resolution des MethodHandle
+import java.lang.invoke.MethodType; //signature des MethodHandle
+import java.lang.reflect.AccessibleObject; //acces aux membres du paquetage par defaut
+import java.util.ArrayList; //Parkings de l'echantillon
+import java.util.List; //Parkings de l'echantillon
+import java.util.concurrent.TimeUnit; //unite des resultats
+
+import org.openjdk.jmh.annotations.AuxCounters; //nombre de Parkings developpes
+import org.openjdk.jmh.annotations.Benchmark; //methodes mesurees
+import org.openjdk.jmh.annotations.BenchmarkMode; //debit et temps moyen
+import org.openjdk.jmh.annotations.Fork; //JVM separees
+import org.openjdk.jmh.annotations.Level; //remise a zero des compteurs
+import org.openjdk.jmh.annotations.Measurement; //iterations mesurees
+import org.openjdk.jmh.annotations.Mode; //modes de mesure
+import org.openjdk.jmh.annotations.OperationsPerInvocation; //temps par Parking de l'echantillon
+import org.openjdk.jmh.annotations.OutputTimeUnit; //unite des resultats
+import org.openjdk.jmh.annotations.Param; //fichiers des exemples
+import org.openjdk.jmh.annotations.Scope; //etat par thread
+import org.openjdk.jmh.annotations.Setup; //preparation des etats
+import org.openjdk.jmh.annotations.State; //etats des mesures
+import org.openjdk.jmh.annotations.Warmup; //iterations de chauffe
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+	static final int SAMPLE_SIZE = 2048; //Nombre de Parkings de l'echantillon developpe
+	static final String SAMPLE_FILE = "Examples/ParkingExpert2.txt"; //Exemple dont est tire l'echantillon
+
+	//APPELS VERS LE SOLVEUR (types effaces en Object)
+	static final MethodHandle PARSE_FILE = handle("Escape", "parseFileToParking", String.class);
+	static final MethodHandle SOLVE = handle("Escape", "solveParking", type("Parking"));
+	static final MethodHandle GET_CONTEXT = handle("Parking", "getContext");
+	static final MethodHandle ACQUIRE = handle("SolverScratch", "acquire", type("SolverContext"));
+	static final MethodHandle EXPAND = handle("Parking", "expand", type("SolverScratch"));
+	static final MethodHandle NEXT_PARKINGS = handle("Parking", "addNextParkings", type("SolverScratch"));
+	static final MethodHandle LOAD = handle("Parking", "load", long.class, int.class, type("PathStore"));
+	static final MethodHandle NEW_PARKING = constructor("Parking", type("SolverContext"), int[].class, long.class);
+	static final MethodHandle SWAP_LEVELS = handle("SolverScratch", "swapLevels");
+	static final MethodHandle LEVEL_ADD = handle("Frontier", "add", long.class, int.class);
+	static final MethodHandle LEVEL_CLEAR = handle("Frontier", "clear");
+	static final MethodHandle LEVEL_SIZE = handle("Frontier", "size");
+	static final MethodHandle IS_SOLVED = handle("Parking", "isSolved", type("SolverScratch"));
+	static final MethodHandle RESET_PATHS = handle("PathStore", "reset", type("Parking"));
+	static final MethodHandle SET_ADD = handle("LongHashSet", "add", long.class);
+	static final MethodHandle SET_CLEAR = handle("LongHashSet", "clear");
+	static final MethodHandle SET_SIZE = handle("LongHashSet", "size");
+	static final MethodHandle PATHS_SIZE = handle("PathStore", "size");
+	static final MethodHandle NEW_RANKING = constructor("StateRanking", type("Parking"));
+	static final MethodHandle RANK = handle("StateRanking", "rank", long.class);
+	static final MethodHandle BITMAP_BYTES = handle("StateRanking", "bitmapBytes");
+	static final MethodHandle NEW_BITMAP = constructor("StateBitmap", long.class);
+	static final MethodHandle BITS_ADD = handle("StateBitmap", "add", long.class);
+	static final MethodHandle BITS_CLEAR = handle("StateBitmap", "clear");
+	static final MethodHandle ALL_PARKINGS = getter("SolverScratch", "_allParkings");
+	static final MethodHandle PATHS = getter("SolverScratch", "_paths");
+	static final MethodHandle LEVEL = getter("SolverScratch", "_level");
+	static final MethodHandle NEXT_LEVEL = getter("SolverScratch", "_nextLevel");
+	static final MethodHandle LEVEL_KEYS = getter("Frontier", "_keys");
+	static final MethodHandle LEVEL_INDICES = getter("Frontier", "_indices");
+	static final MethodHandle CARS_COUNT = getter("SolverContext", "_carsCount");
+	static final MethodHandle KEY = getter("Parking", "_key");
+	static final MethodHandle SET_INDEX = setter("Parking", "_index");
+	static final MethodHandle THREAD_SCRATCH = getter("SolverScratch", "_threadScratch");
+
+	static Class<?> type(String name) {
+		/*
+		 * Retourne la classe name du paquetage par defaut.
+		 */
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException exception) {
+			throw new IllegalStateException("classe du solveur absente du classpath: " + name, exception);
+		}
+	}
+
+	static MethodHandle handle(String owner, String name, Class<?>... parameters) {
+		/*
+		 * Retourne un MethodHandle vers la methode name de owner, dont les types du paquetage par
+		 * defaut sont remplaces par Object (appels par invokeExact).
+		 */
+		try {
+			java.lang.reflect.Method method = type(owner).getDeclaredMethod(name, parameters);
+			MethodHandle handle = MethodHandles.lookup().unreflect(accessible(method));
+			return handle.asType(erase(handle.type()));
+		}
+		catch (ReflectiveOperationException exception) {
+			throw new IllegalStateException("methode du solveur introuvable: " + owner + "." + name, exception);
+		}
+	}
+
+	static MethodHandle constructor(String owner, Class<?>... parameters) {
+		/*
+		 * Retourne un MethodHandle vers le constructeur de owner, types effaces comme pour handle.
+		 */
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflectConstructor(accessible(type(owner).getDeclaredConstructor(parameters)));
+			return handle.asType(erase(handle.type()));
+		}
+		catch (ReflectiveOperationException exception) {
+			throw new IllegalStateException("constructeur du solveur introuvable: " + owner, exception);
+		}
+	}
+
+	static MethodHandle getter(String owner, String name) {
+		/*
+		 * Retourne un MethodHandle lisant le champ name de owner (d'une instance de owner s'il n'est pas
+		 * statique).
+		 */
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflectGetter(accessible(type(owner).getDeclaredField(name)));
+			return handle.asType(erase(handle.type()));
+		}
+		catch (ReflectiveOperationException exception) {
+			throw new IllegalStateException("champ du solveur introuvable: " + owner + "." + name, exception);
+		}
+	}
+
+	static MethodHandle setter(String owner, String name) {
+		/*
+		 * Retourne un MethodHandle ecrivant le champ name d'une instance de owner.
+		 */
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflectSetter(accessible(type(owner).getDeclaredField(name)));
+			return handle.asType(erase(handle.type()));
+		}
+		catch (ReflectiveOperationException exception) {
+			throw new IllegalStateException("champ du solveur introuvable: " + owner + "." + name, exception);
+		}
+	}
+
+	static <T extends AccessibleObject> T accessible(T member) {
+		member.setAccessible(true); //Membres package-private du paquetage par defaut
+		return member;
+	}
+
+	static MethodType erase(MethodType type) {
+		/*
+		 * Remplace par Object les types reference de type, en conservant les types primitifs.
+		 */
+		MethodType erased = type;
+		for (int i=0; i<type.parameterCount(); i++) {
+			if (!type.parameterType(i).isPrimitive()) erased = erased.changeParameterType(i, Object.class);
+		}
+		if (!type.returnType().isPrimitive()) erased = erased.changeReturnType(Object.class);
+		return erased;
+	}
+
+	//ETATS
+	@State(Scope.Thread)
+	public static class Sample {
+		Object _root; //Racine de l'exemple
+		Object _scratch; //Tampons du thread
+		Object[] _parkings; //Premiers Parkings du parcours en largeur depuis la racine
+		long[] _keys; //Cles de ces Parkings
+		long[] _ranks; //Rangs de ces Parkings (StateRanking de la racine)
+		Object _visitedBits; //Ensemble couvrant tous les rangs de la racine
+
+		@Setup
+		public void setUp() throws Throwable {
+			/*
+			 * Reunit les SAMPLE_SIZE premiers Parkings generes par un parcours en largeur de l'exemple, sauf
+			 * ceux dont un enfant libere la Goal Car (leur developpement rejouerait la solution).
+			 */
+			_root = (Object) PARSE_FILE.invokeExact((Object) SAMPLE_FILE);
+			Object context = (Object) GET_CONTEXT.invokeExact(_root);
+			_scratch = (Object) ACQUIRE.invokeExact(context);
+			Object paths = (Object) PATHS.invokeExact(_scratch);
+			long rootKey = (long) KEY.invokeExact(_root);
+			boolean added = (boolean) SET_ADD.invokeExact((Object) ALL_PARKINGS.invokeExact(_scratch), rootKey);
+			int rootIndex = (int) RESET_PATHS.invokeExact(paths, _root);
+			SET_INDEX.invokeExact(_root, rootIndex);
+			LEVEL_ADD.invokeExact((Object) LEVEL.invokeExact(_scratch), rootKey, rootIndex);
+
+			//Chaque Parking des niveaux (cle et index) est construit pour etre developpe a part
+			List<Object> sample = new ArrayList<Object>();
+			int carsCount = (int) CARS_COUNT.invokeExact(context);
+			Object level = (Object) LEVEL.invokeExact(_scratch);
+			while (sample.size() < SAMPLE_SIZE && (int) LEVEL_SIZE.invokeExact(level) > 0) {
+				long[] keys = (long[]) (Object) LEVEL_KEYS.invokeExact(level);
+				int[] indices = (int[]) (Object) LEVEL_INDICES.invokeExact(level);
+				for (int rank=0; rank<(int) LEVEL_SIZE.invokeExact(level); rank++) {
+					Object parking = (Object) NEW_PARKING.invokeExact(context, new int[carsCount], keys[rank]);
+					LOAD.invokeExact(parking, keys[rank], indices[rank], paths);
+					if ((Object) NEXT_PARKINGS.invokeExact(parking, _scratch) != null) continue; //Parent de la solution
+					sample.add(parking);
+				}
+				SWAP_LEVELS.invokeExact(_scratch);
+				level = (Object) LEVEL.invokeExact(_scratch);
+			}
+			if (sample.size() < SAMPLE_SIZE) throw new IllegalStateException("echantillon trop petit: " + sample.size());
+			_parkings = sample.subList(0, SAMPLE_SIZE).toArray();
+			_keys = new long[_parkings.length];
+			for (int i=0; i<_parkings.length; i++) _keys[i] = (long) KEY.invokeExact(_parkings[i]);
+			Object ranking = (Object) NEW_RANKING.invokeExact(_root);
+			_ranks = new long[_keys.length];
+			for (int i=0; i<_keys.length; i++) _ranks[i] = (long) RANK.invokeExact(ranking, _keys[i]);
+			_visitedBits = (Object) NEW_BITMAP.invokeExact((long) BITMAP_BYTES.invokeExact(ranking));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Example {
+		@Param({"Examples/ParkingEnonce.txt", "Examples/ParkingExpert1.txt", "Examples/ParkingExpert2.txt",
+				"Examples/ParkingExpert3.txt", "Examples/ParkingSolved.txt"})
+		public String _filename;
+		Object _root; //Racine de l'exemple
+
+		@Setup
+		public void setUp() throws Throwable {
+			if (!new File(_filename).isFile()) throw new IllegalStateException("lancer depuis la racine du depot");
+			_root = (Object) PARSE_FILE.invokeExact((Object) _filename);
+		}
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Expanded {
+		public long expandedNodes; //Parkings generes par les resolutions mesurees
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			expandedNodes = 0;
+		}
+	}
+
+	//MESURES
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_SIZE)
+	public int expand(Sample sample) throws Throwable {
+		/*
+		 * Developpement sans allocation de chaque Parking de l'echantillon (temps par Parking).
+		 */
+		int children = 0;
+		for (Object parking : sample._parkings) children += (int) EXPAND.invokeExact(parking, sample._scratch);
+		return children;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_SIZE)
+	public int addNextParkings(Sample sample) throws Throwable {
+		/*
+		 * Generation des Parkings nouveaux de chaque Parking de l'echantillon dans le niveau suivant, a
+		 * partir d'un ensemble de Parkings generes et d'un niveau vides (temps et allocations par Parking).
+		 */
+		SET_CLEAR.invokeExact((Object) ALL_PARKINGS.invokeExact(sample._scratch));
+		int rootIndex = (int) RESET_PATHS.invokeExact((Object) PATHS.invokeExact(sample._scratch), sample._root);
+		Object nextLevel = (Object) NEXT_LEVEL.invokeExact(sample._scratch);
+		LEVEL_CLEAR.invokeExact(nextLevel);
+		int solutions = 0;
+		for (Object parking : sample._parkings) {
+			if ((Object) NEXT_PARKINGS.invokeExact(parking, sample._scratch) != null) solutions++;
+		}
+		return rootIndex + solutions + (int) LEVEL_SIZE.invokeExact(nextLevel);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_SIZE)
+	public int isSolved(Sample sample) throws Throwable {
+		/*
+		 * Construction du masque d'occupation de chaque Parking et test de la Goal Car.
+		 */
+		int solved = 0;
+		for (Object parking : sample._parkings) {
+			if ((Object) IS_SOLVED.invokeExact(parking, sample._scratch) != null) solved++;
+		}
+		return solved;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_SIZE)
+	public int insertKeys(Sample sample) throws Throwable {
+		/*
+		 * Insertion des cles de l'echantillon dans l'ensemble des Parkings generes (remplace
+		 * hashCode/equals de Parking avec un HashSet).
+		 */
+		Object allParkings = (Object) ALL_PARKINGS.invokeExact(sample._scratch);
+		SET_CLEAR.invokeExact(allParkings);
+		int added = 0;
+		for (long key : sample._keys) {
+			if ((boolean) SET_ADD.invokeExact(allParkings, key)) added++;
+		}
+		return added;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_SIZE)
+	public int insertRanks(Sample sample) throws Throwable {
+		/*
+		 * Insertion des rangs de l'echantillon dans un StateBitmap (un bit par disposition, sans hachage),
+		 * a comparer a insertKeys.
+		 */
+		BITS_CLEAR.invokeExact(sample._visitedBits);
+		int added = 0;
+		for (long rank : sample._ranks) {
+			if ((boolean) BITS_ADD.invokeExact(sample._visitedBits, rank)) added++;
+		}
+		return added;
+	}
+
+	@Benchmark
+	public Object parseFile(Example example) throws Throwable {
+		/*
+		 * Lecture du fichier de l'exemple.
+		 */
+		return (Object) PARSE_FILE.invokeExact((Object) example._filename);
+	}
+
+	@Benchmark
+	public Object solve(Example example, Expanded expanded) throws Throwable {
+		/*
+		 * Resolution complete de l'exemple; expandedNodes (Parkings indexes dans l'arbre des deplacements
+		 * du thread) rapporte au temps mesure donne le temps moyen par Parking genere.
+		 */
+		Object solution = (Object) SOLVE.invokeExact(example._root);
+		Object scratch = ((ThreadLocal<?>) (Object) THREAD_SCRATCH.invokeExact()).get();
+		expanded.expandedNodes += (int) PATHS_SIZE.invokeExact((Object) PATHS.invokeExact(scratch));
+		return solution;
+	}
+}
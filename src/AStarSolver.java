@@ -0,0 +1,119 @@
+/**
+ * Recherche A* de la meilleure solution: les Parkings sont developpes par ordre croissant du nombre de
+ * deplacements deja effectues plus l'estimation Parking.estimateMovesToExit des deplacements restants.
+ * Pour l'instrumentation, les Parkings de meme cout total estime forment un niveau
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.PriorityQueue; //file de priorite des Parkings a developper
+
+public class AStarSolver {
+
+	static Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe.
+		 * La solution compte tous les deplacements d'une position, ceux de la Goal Car compris: l'heuristique
+		 * etant coherente, le premier Parking developpe dont la Goal Car est libre termine une solution optimale.
+		 */
+		SolverScratch scratch = SolverScratch.acquire(root.getContext());
+		LongHashSet developed = scratch._allParkings; //Parkings deja developpes
+		PathStore paths = scratch._paths; //Parent et deplacement de chaque Parking genere
+		LongIntHashMap bestCosts = new LongIntHashMap(); //Plus petit nombre de deplacements connu par Parking
+		PriorityQueue<Node> open = new PriorityQueue<Node>(); //Parkings a developper
+		int generated = 0; //Numero d'ordre du dernier Parking genere
+		SearchStats.Search stats = SearchStats.begin("astar"); //Mesures par cout total estime (null si desactivees)
+		int levelBound = -1; //Cout total estime des Parkings du niveau mesure
+		long levelFrontier = 0, expanded = 0, children = 0, duplicates = 0; //Mesures de ce niveau
+
+		int rootEstimate = root.estimateMovesToExit();
+		if (rootEstimate == Parking.UNREACHABLE) {
+			if (stats != null) stats.end(false);
+			return null;
+		}
+		root._index = paths.reset(root);
+		open.add(new Node(root, 0, rootEstimate, generated++));
+		bestCosts.put(root._key, 0);
+
+		while (!open.isEmpty() && !scratch.stopped()) { //Arret si une limite de la resolution est atteinte
+			Node node = open.poll();
+			Parking parking = node._parking;
+
+			//Un niveau mesure regroupe les Parkings de meme cout total estime
+			if (stats != null && node._cost + node._estimate != levelBound) {
+				if (levelBound >= 0) stats.endLevel(levelFrontier, expanded, children, duplicates, bestCosts.size());
+				stats.beginLevel();
+				levelBound = node._cost + node._estimate;
+				levelFrontier = open.size() + 1;
+				expanded = children = duplicates = 0;
+			}
+
+			if (!developed.add(parking._key)) { //Deja developpe par un chemin plus court
+				duplicates++;
+				continue;
+			}
+			expanded++;
+
+			//Si la Goal Car est libre, la sortie est atteinte en node._estimate deplacements de plus
+			Parking solution = parking.isSolved(scratch);
+			if (solution != null) {
+				if (stats != null) {
+					stats.endLevel(levelFrontier, expanded, children, duplicates, bestCosts.size());
+					stats.end(true);
+				}
+				return solution;
+			}
+
+			//Sinon, on genere les Parkings suivants qui ameliorent le meilleur chemin connu
+			int childrenCount = parking.expand(scratch);
+			int cost = node._cost + 1;
+			children += childrenCount;
+			for (int child=0; child<childrenCount; child++) {
+				long childKey = scratch._childKeys[child];
+				if (cost >= bestCosts.get(childKey, Integer.MAX_VALUE)) {
+					duplicates++;
+					continue;
+				}
+
+				Parking childParking = parking.newChild(scratch._childCars[child], scratch._childMoves[child], childKey);
+				int estimate = childParking.estimateMovesToExit();
+				if (estimate == Parking.UNREACHABLE) continue;
+				bestCosts.put(childKey, cost);
+				childParking._index = paths.add(parking._index, scratch._childCars[child], scratch._childMoves[child]);
+				open.add(new Node(childParking, cost, estimate, generated++));
+			}
+		}
+
+		if (stats != null) {
+			if (levelBound >= 0) stats.endLevel(levelFrontier, expanded, children, duplicates, bestCosts.size());
+			stats.end(false);
+		}
+		return null; // Aucune solution trouvee
+	}
+
+	static final class Node implements Comparable<Node> {
+		final Parking _parking; //Parking a developper
+		final int _cost; //Nombre de deplacements depuis la racine
+		final int _estimate; //Estimation des deplacements restants
+		final int _order; //Ordre de generation (departage les egalites)
+
+		Node(Parking parking, int cost, int estimate, int order) {
+			_parking = parking;
+			_cost = cost;
+			_estimate = estimate;
+			_order = order;
+		}
+
+		public int compareTo(Node other) {
+			/*
+			 * Ordonne par cout total estime, puis par estimation restante (les Parkings les plus proches
+			 * de la sortie d'abord), puis par ordre de generation.
+			 */
+			int total = _cost + _estimate, otherTotal = other._cost + other._estimate;
+			if (total != otherTotal) return Integer.compare(total, otherTotal);
+			if (_estimate != other._estimate) return Integer.compare(_estimate, other._estimate);
+			return Integer.compare(_order, other._order);
+		}
+	}
+}
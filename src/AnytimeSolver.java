@@ -0,0 +1,226 @@
+/**
+ * Resolution progressive (anytime): une recherche gloutonne, developpant d'abord les Parkings dont le
+ * moins de cases separent la Goal Car de la sortie, trouve tres vite une premiere solution; une recherche
+ * A* limitee aux Parkings pouvant mener a une solution plus courte l'ameliore ensuite, jusqu'a prouver
+ * son optimalite ou jusqu'a l'echeance. Chaque solution amelioree est transmise des qu'elle est trouvee,
+ * avec l'indication de son optimalite. Pour l'instrumentation, chaque phase forme un niveau
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.PriorityQueue; //files de priorite des Parkings a developper
+
+public class AnytimeSolver {
+	static final int STOP_CHECK = 1 << 10; //Parkings developpes entre deux verifications de l'echeance
+
+	interface Listener {
+		void improved(Parking solution, int moves, boolean optimal); //Nouvelle meilleure solution (ou sa preuve d'optimalite)
+	}
+
+	final SolverScratch _scratch; //Tampons du thread
+	final long _deadline; //Echeance de la resolution (System.nanoTime), 0: aucune
+	final Listener _listener; //Destinataire des solutions ameliorees (null: aucun)
+	final int _lowerBound; //Estimation de la racine: une solution de cette longueur est optimale
+	Parking _best; //Meilleure solution trouvee (null: aucune)
+	int _bestMoves = Integer.MAX_VALUE; //Nombre de deplacements de _best
+	boolean _optimal; //Optimalite de _best prouvee
+	boolean _stopped; //Echeance atteinte ou resolution abandonnee
+	long _expanded, _generated, _duplicates; //Mesures de la phase en cours
+
+	AnytimeSolver(Parking root, SolverScratch scratch, long timeoutMillis, Listener listener) {
+		_scratch = scratch;
+		_deadline = timeoutMillis == 0 ? 0 : System.nanoTime() + timeoutMillis*1000000;
+		_listener = listener;
+		_lowerBound = root.estimateMovesToExit();
+	}
+
+	static Parking solveParking(Parking root, long timeoutMillis, Listener listener) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root trouvee en au plus
+		 * timeoutMillis millisecondes (0: aucun delai, la solution est alors optimale), sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune n'a ete trouvee. Chaque solution plus
+		 * courte que les precedentes est transmise a listener (s'il n'est pas null) des qu'elle est trouvee,
+		 * puis a nouveau si son optimalite est prouvee ensuite.
+		 */
+		SolverScratch scratch = SolverScratch.acquire(root.getContext());
+		AnytimeSolver solver = new AnytimeSolver(root, scratch, timeoutMillis, listener);
+		if (solver._lowerBound == Parking.UNREACHABLE) return null;
+		SearchStats.Search stats = SearchStats.begin("anytime"); //Mesures par phase (null si desactivees)
+
+		if (stats != null) stats.beginLevel();
+		int frontier = solver.greedy(root);
+		if (stats != null) stats.endLevel(frontier, solver._expanded, solver._generated, solver._duplicates, scratch._paths.size());
+
+		if (solver._best != null && !solver._optimal && !solver._stopped) {
+			scratch.reset(root.getContext()); //La solution est reconstruite: les tampons peuvent etre reutilises
+			solver._expanded = solver._generated = solver._duplicates = 0;
+			if (stats != null) stats.beginLevel();
+			frontier = solver.refine(root);
+			if (stats != null) stats.endLevel(frontier, solver._expanded, solver._generated, solver._duplicates, scratch._paths.size());
+		}
+
+		if (stats != null) stats.end(solver._best != null);
+		return solver._best;
+	}
+
+	private int greedy(Parking root) {
+		/*
+		 * Recherche gloutonne d'une premiere solution: les Parkings sont developpes par nombre croissant de
+		 * cases occupees entre la Goal Car et la sortie, puis par estimation croissante des deplacements
+		 * restants. Chaque Parking n'est genere qu'une fois. Retourne la taille de la file restante.
+		 */
+		PathStore paths = _scratch._paths;
+		PriorityQueue<Candidate> open = new PriorityQueue<Candidate>(); //Parkings a developper
+		int generated = 0; //Numero d'ordre du dernier Parking genere
+
+		root._index = paths.reset(root);
+		_scratch._allParkings.add(root._key);
+		Parking alreadySolved = root.isSolved(_scratch);
+		if (alreadySolved != null) {
+			improve(alreadySolved, true);
+			return 0;
+		}
+		open.add(new Candidate(root, _scratch._exitSpotsBlocked, _lowerBound, generated++));
+
+		while (!open.isEmpty() && !stopped()) {
+			Parking parking = open.poll()._parking;
+			int childrenCount = parking.expand(_scratch);
+			_generated += childrenCount;
+
+			//Premier deplacement liberant la Goal Car: la solution passe par lui
+			int child = _scratch._goalFreedBy;
+			if (child >= 0) {
+				improve(parking.solutionThrough(_scratch._childCars[child], _scratch._childMoves[child], paths), false);
+				return open.size();
+			}
+
+			for (child=0; child<childrenCount; child++) {
+				long childKey = _scratch._childKeys[child];
+				if (!_scratch._allParkings.add(childKey)) {
+					_duplicates++;
+					continue;
+				}
+				Parking childParking = parking.newChild(_scratch._childCars[child], _scratch._childMoves[child], childKey);
+				int estimate = childParking.estimateMovesToExit();
+				if (estimate == Parking.UNREACHABLE) continue;
+				childParking._index = paths.add(parking._index, _scratch._childCars[child], _scratch._childMoves[child]);
+				open.add(new Candidate(childParking, childParking.exitSpotsBlocked(_scratch), estimate, generated++));
+			}
+		}
+		return open.size(); //File videe: aucune solution n'existe (ou echeance atteinte)
+	}
+
+	private int refine(Parking root) {
+		/*
+		 * Recherche A* (comme AStarSolver) limitee aux Parkings dont le cout total estime est inferieur au
+		 * nombre de deplacements de _best. Les solutions plus courtes rencontrees en chemin sont transmises;
+		 * la premiere solution atteinte par A*, ou l'epuisement de la file, prouve l'optimalite.
+		 * Retourne la taille de la file restante.
+		 */
+		LongHashSet developed = _scratch._allParkings; //Parkings deja developpes
+		PathStore paths = _scratch._paths; //Parent et deplacement de chaque Parking genere
+		LongIntHashMap bestCosts = new LongIntHashMap(); //Plus petit nombre de deplacements connu par Parking
+		PriorityQueue<AStarSolver.Node> open = new PriorityQueue<AStarSolver.Node>(); //Parkings a developper
+		int generated = 0; //Numero d'ordre du dernier Parking genere
+
+		root._index = paths.reset(root);
+		open.add(new AStarSolver.Node(root, 0, _lowerBound, generated++));
+		bestCosts.put(root._key, 0);
+
+		while (!open.isEmpty()) {
+			if (stopped()) return open.size();
+			AStarSolver.Node node = open.poll();
+			if (node._cost + node._estimate >= _bestMoves) break; //Plus aucun Parking ne mene a une solution plus courte
+			Parking parking = node._parking;
+			if (!developed.add(parking._key)) { //Deja developpe par un chemin plus court
+				_duplicates++;
+				continue;
+			}
+
+			//Premiere solution atteinte par A*: optimale, l'heuristique etant coherente
+			Parking solution = parking.isSolved(_scratch);
+			if (solution != null) {
+				improve(solution, true);
+				return open.size();
+			}
+
+			int childrenCount = parking.expand(_scratch);
+			int cost = node._cost + 1;
+			_generated += childrenCount;
+
+			//Un deplacement liberant la Goal Car donne une solution, peut-etre plus courte que _best
+			int freedBy = _scratch._goalFreedBy;
+			if (freedBy >= 0) {
+				int carIndex = _scratch._childCars[freedBy], move = _scratch._childMoves[freedBy];
+				Parking freed = parking.newChild(carIndex, move, _scratch._childKeys[freedBy]);
+				if (cost + freed.estimateMovesToExit() < _bestMoves) improve(parking.solutionThrough(carIndex, move, paths), false);
+			}
+
+			for (int child=0; child<childrenCount; child++) {
+				long childKey = _scratch._childKeys[child];
+				if (cost >= bestCosts.get(childKey, Integer.MAX_VALUE)) {
+					_duplicates++;
+					continue;
+				}
+				Parking childParking = parking.newChild(_scratch._childCars[child], _scratch._childMoves[child], childKey);
+				int estimate = childParking.estimateMovesToExit();
+				if (estimate == Parking.UNREACHABLE || cost + estimate >= _bestMoves) continue;
+				bestCosts.put(childKey, cost);
+				childParking._index = paths.add(parking._index, _scratch._childCars[child], _scratch._childMoves[child]);
+				open.add(new AStarSolver.Node(childParking, cost, estimate, generated++));
+			}
+		}
+
+		improve(_best, true); //Aucun Parking restant ne mene a une solution plus courte
+		return open.size();
+	}
+
+	private boolean stopped() {
+		/*
+		 * Compte un Parking developpe et retourne true si la resolution doit s'arreter (echeance atteinte
+		 * ou limite de SolverScratch.checkLimits), verifie tous les STOP_CHECK Parkings.
+		 */
+		if ((++_expanded & (STOP_CHECK-1)) == 0) {
+			_stopped = _scratch.checkLimits() || (_deadline != 0 && System.nanoTime() - _deadline > 0);
+		}
+		return _stopped;
+	}
+
+	private void improve(Parking solution, boolean optimal) {
+		/*
+		 * Retient solution si elle est plus courte que _best (ou prouve l'optimalite de _best), et la
+		 * transmet a _listener. Une solution aussi courte que l'estimation de la racine est optimale.
+		 */
+		int moves = 0;
+		for (Parking step=solution; step.getParentParking()!=null; step=step.getParentParking()) moves++;
+		optimal |= moves == _lowerBound;
+		if (moves > _bestMoves || (moves == _bestMoves && (_optimal || !optimal))) return;
+		_best = solution;
+		_bestMoves = moves;
+		_optimal = optimal;
+		if (_listener != null) _listener.improved(solution, moves, optimal);
+	}
+
+	static final class Candidate implements Comparable<Candidate> {
+		final Parking _parking; //Parking a developper
+		final int _blocked; //Cases occupees entre la Goal Car et la sortie
+		final int _estimate; //Estimation des deplacements restants
+		final int _order; //Ordre de generation (departage les egalites)
+
+		Candidate(Parking parking, int blocked, int estimate, int order) {
+			_parking = parking;
+			_blocked = blocked;
+			_estimate = estimate;
+			_order = order;
+		}
+
+		public int compareTo(Candidate other) {
+			/*
+			 * Ordonne par cases bloquees, puis par estimation restante, puis par ordre de generation.
+			 */
+			if (_blocked != other._blocked) return Integer.compare(_blocked, other._blocked);
+			if (_estimate != other._estimate) return Integer.compare(_estimate, other._estimate);
+			return Integer.compare(_order, other._order);
+		}
+	}
+}
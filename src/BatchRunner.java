@@ -0,0 +1,276 @@
+/**
+ * Mode batch: resout en une seule execution une suite de Parkings lue dans une liste de fichiers (ou
+ * sur l'entree standard). La lecture, la resolution (par un nombre borne de threads) et l'ecriture
+ * forment une chaine: au plus un nombre borne de Parkings sont en cours a la fois, et chaque resultat
+ * est ecrit des qu'il est connu, dans l'ordre de la liste. Un Parking trop long a resoudre est
+ * abandonne apres un delai, sans retenir les suivants indefiniment
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.BufferedReader; //lecture de la liste
+import java.io.FileReader; //lecture de la liste
+import java.io.File; //fichiers et repertoires de la liste
+import java.io.IOException; //erreurs de lecture
+import java.io.InputStreamReader; //liste sur l'entree standard
+import java.io.PrintStream; //sortie des resultats
+import java.nio.ByteBuffer; //fichier projete en memoire
+import java.util.Arrays; //tri des fichiers d'un repertoire
+import java.util.concurrent.ArrayBlockingQueue; //resultats en attente d'ecriture (borne)
+import java.util.concurrent.BlockingQueue; //file entre lecture et ecriture
+import java.util.concurrent.Callable; //resolution d'un Parking
+import java.util.concurrent.CancellationException; //resolution abandonnee
+import java.util.concurrent.ExecutionException; //erreur pendant la resolution
+import java.util.concurrent.ExecutorService; //threads de resolution
+import java.util.concurrent.Executors; //creation des threads de resolution
+import java.util.concurrent.FutureTask; //resultat d'un Parking
+import java.util.concurrent.TimeUnit; //delais d'attente
+import java.util.concurrent.TimeoutException; //delai depasse
+
+public class BatchRunner {
+	static final int PENDING_PER_WORKER = 4; //Parkings en cours (lus mais non ecrits) par thread de resolution
+
+	final int _workers; //Nombre de threads de resolution
+	final long _timeoutMillis; //Delai de resolution d'un Parking (0: aucun)
+	final int _maxPaths; //Budget memoire d'une resolution, en Parkings indexes
+	final String _engine; //Algorithme de recherche
+	final boolean _slideMoves; //Mesure des deplacements
+	final String _outputMode; //Forme des resultats: text (une ligne de resume), moves ou json
+	final SolutionCache _cache; //Solutions deja calculees, partagees par les threads (null: aucun cache)
+	final PrintStream _output; //Sortie des resultats
+
+	public BatchRunner(int workers, long timeoutMillis, int maxPaths, String engine, boolean slideMoves,
+			String outputMode, SolutionCache cache, PrintStream output) {
+		_workers = workers;
+		_timeoutMillis = timeoutMillis;
+		_maxPaths = maxPaths;
+		_engine = engine;
+		_slideMoves = slideMoves;
+		_outputMode = outputMode;
+		_cache = cache;
+		_output = output;
+	}
+
+	public void run(String listFilename) throws IOException, InterruptedException {
+		/*
+		 * Resout les Parkings dont les fichiers sont listes (un par ligne) dans listFilename, ou sur
+		 * l'entree standard si listFilename vaut "-". Un repertoire de la liste designe tous ses fichiers.
+		 * Si listFilename est lui-meme un repertoire, tous ses fichiers sont resolus.
+		 */
+		ExecutorService pool = Executors.newFixedThreadPool(_workers);
+		BlockingQueue<PuzzleTask> pending = new ArrayBlockingQueue<PuzzleTask>(_workers*PENDING_PER_WORKER);
+		Thread writer = new Thread(() -> writeResults(pending), "batch-writer");
+		writer.start();
+
+		try {
+			File listFile = new File(listFilename);
+			if (listFile.isDirectory()) {
+				submitAll(listFile, pool, pending);
+			}
+			else {
+				BufferedReader list = new BufferedReader(listFilename.equals("-")
+						? new InputStreamReader(System.in) : new FileReader(listFile));
+				try {
+					String line;
+					while ((line = list.readLine()) != null) {
+						if (!line.trim().isEmpty()) submitAll(new File(line.trim()), pool, pending);
+					}
+				}
+				finally {
+					list.close();
+				}
+			}
+		}
+		finally {
+			pending.put(PuzzleTask.END); //Fin de la liste
+			writer.join();
+			pool.shutdownNow();
+		}
+	}
+
+	private void submitAll(File file, ExecutorService pool, BlockingQueue<PuzzleTask> pending)
+			throws InterruptedException {
+		/*
+		 * Lance la resolution du Parking de file (de chacun de ses Parkings s'il est au format d'une ligne),
+		 * ou de tous les fichiers de file s'il s'agit d'un repertoire (par ordre de nom). Bloque tant que
+		 * trop de Parkings sont en cours.
+		 */
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			Arrays.sort(files);
+			for (File child : files) {
+				if (child.isFile()) submitAll(child, pool, pending);
+			}
+			return;
+		}
+		ByteBuffer data;
+		try {
+			data = PuzzleParser.map(file);
+		}
+		catch (IOException exception) {
+			submit(new PuzzleTask(file.getPath(), fails(file.getPath(), exception)), pool, pending);
+			return;
+		}
+		if (PuzzleParser.isDrawing(data)) {
+			Callable<String> resolution;
+			try {
+				resolution = solves(file.getPath(), PuzzleParser.parseDrawing(data));
+			}
+			catch (IOException | RuntimeException exception) {
+				resolution = fails(file.getPath(), exception);
+			}
+			submit(new PuzzleTask(file.getPath(), resolution), pool, pending);
+			return;
+		}
+
+		//Format d'une ligne: chaque ligne non vide est un Parking
+		int lineNumber = 0;
+		for (int from=0, to; from<data.limit(); from=to+1) {
+			to = PuzzleParser.lineEnd(data, from);
+			lineNumber++;
+			if (to-from <= 1) continue; //Ligne vide
+			String name = file.getPath() + ":" + lineNumber;
+			Callable<String> resolution;
+			try {
+				resolution = solves(name, PuzzleParser.parseLine(data, from, to));
+			}
+			catch (IOException | RuntimeException exception) {
+				resolution = fails(name, exception);
+			}
+			submit(new PuzzleTask(name, resolution), pool, pending);
+		}
+	}
+
+	private void submit(PuzzleTask task, ExecutorService pool, BlockingQueue<PuzzleTask> pending)
+			throws InterruptedException {
+		/*
+		 * Lance la resolution task, des qu'une place se libere (le lecteur ne devance pas l'ecriture).
+		 */
+		pending.put(task);
+		pool.execute(task);
+	}
+
+	private Callable<String> fails(String name, Exception exception) {
+		/*
+		 * Retourne la resolution du Parking name, illisible a cause de exception.
+		 */
+		return () -> error(name, String.format("fichier illisible (%s)", exception.getMessage()));
+	}
+
+	private Callable<String> solves(String name, Parking parsed) {
+		/*
+		 * Retourne la resolution du Parking parsed, qui produit la ligne de resultat de name.
+		 */
+		Parking root = _slideMoves ? new Parking(parsed.getContext().withSlideMoves(true), parsed._carPositions) : parsed;
+		return () -> solve(name, root);
+	}
+
+	String solve(String name, Parking root) {
+		/*
+		 * Resout root dans le delai et le budget memoire d'une resolution (sauf si sa solution est dans le
+		 * cache), et retourne la ligne de resultat de name.
+		 */
+		String impossibleMessage = root.isImpossible();
+		if (impossibleMessage != "") return result(name, null, impossibleMessage);
+		long deadline = _timeoutMillis == 0 ? 0 : System.nanoTime() + _timeoutMillis*1000000;
+		SolveResult outcome;
+		if (_cache == null) outcome = Escape.solve(root, _engine, 1, deadline, null, _maxPaths);
+		else {
+			try {
+				outcome = _cache.solveParking(root, parking -> Escape.solve(parking, _engine, 1, deadline, null, _maxPaths));
+			}
+			catch (IOException exception) {
+				return error(name, String.format("cache illisible (%s)", exception.getMessage()));
+			}
+		}
+		if (outcome._status == SolveResult.Status.CANCELLED) return null; //Resolution abandonnee: resultat ignore
+		if (outcome.isStopped()) return error(name, outcome.stopMessage(_timeoutMillis));
+		return result(name, outcome._solution, null);
+	}
+
+	String result(String name, Parking solution, String failure) {
+		/*
+		 * Retourne la ligne de resultat de name: sa solution si solution n'est pas null, sinon la raison
+		 * failure de l'absence de solution (null si la recherche n'en a trouve aucune).
+		 */
+		if (_outputMode.equals("text")) {
+			if (solution == null) return String.format("%s : pas de solution%s", name, failure==null ? "" : " car " + failure);
+			return String.format("%s : %d %s", name, Renderer.path(solution).length-1,
+					_slideMoves ? "glissements" : "mouvements");
+		}
+		if (solution == null && failure != null && _outputMode.equals("moves")) System.err.println(name + " : " + failure); //La ligne ne porte que MOVES_NONE
+		String line = new Renderer().result(_outputMode, name, null, solution, failure).take();
+		return line.substring(0, line.length()-1); //Sans le saut de ligne final
+	}
+
+	String error(String name, String message) {
+		/*
+		 * Retourne la ligne de resultat de name, non resolu a cause de l'erreur message.
+		 */
+		if (_outputMode.equals("moves")) System.err.println(name + " : " + message); //La ligne ne porte que MOVES_ERROR
+		String line = new Renderer().error(_outputMode, name, message).take();
+		return line.substring(0, line.length()-1); //Sans le saut de ligne final
+	}
+
+	private void writeResults(BlockingQueue<PuzzleTask> pending) {
+		/*
+		 * Ecrit les resultats dans l'ordre de la liste, des qu'ils sont connus. Un Parking dont la
+		 * resolution depasse le delai est abandonne.
+		 */
+		try {
+			//Retirer un Parking de la file libere une place pour la lecture
+			for (PuzzleTask task = pending.take(); task != PuzzleTask.END; task = pending.take()) {
+				_output.println(task.awaitResult(this));
+				_output.flush();
+			}
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static final class PuzzleTask extends FutureTask<String> {
+		static final PuzzleTask END = new PuzzleTask(null, () -> null); //Marque de fin de la liste
+
+		final String _name; //Fichier (et ligne) du Parking
+		volatile long _startedAt; //Debut de la resolution (System.nanoTime), 0 si pas encore commencee
+
+		PuzzleTask(String name, Callable<String> resolution) {
+			super(resolution);
+			_name = name;
+		}
+
+		public void run() {
+			_startedAt = System.nanoTime();
+			super.run();
+		}
+
+		String awaitResult(BatchRunner runner) throws InterruptedException {
+			/*
+			 * Attend le resultat, au plus runner._timeoutMillis millisecondes apres le debut de la
+			 * resolution (sans limite si ce delai vaut 0), et retourne la ligne a ecrire.
+			 */
+			long timeoutMillis = runner._timeoutMillis;
+			try {
+				if (timeoutMillis == 0) return get();
+				while (_startedAt == 0 && !isDone()) { //Pas encore commencee: le delai ne court pas
+					try {
+						return get(timeoutMillis, TimeUnit.MILLISECONDS);
+					}
+					catch (TimeoutException exception) {
+						continue;
+					}
+				}
+				long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _startedAt);
+				return get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException | CancellationException exception) {
+				cancel(true); //Interrompt la resolution, qui s'arrete au prochain niveau
+				return runner.error(_name, String.format("abandonne apres %d ms", timeoutMillis));
+			}
+			catch (ExecutionException exception) {
+				return runner.error(_name, String.format("erreur (%s)", exception.getCause()));
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Parcours en largeur bidirectionnel: un parcours part de la racine, l'autre de toutes les dispositions
+ * ou la Goal Car est a la sortie (les autres voitures mobiles occupant n'importe quelles positions
+ * legales). Les deplacements etant reversibles, le parcours inverse utilise les memes deplacements que
+ * le parcours direct. A chaque etape, le cote dont le niveau est le plus petit est developpe d'un
+ * niveau entier; la premiere disposition atteinte par les deux cotes termine une solution optimale.
+ * La solution compte tous les deplacements, ceux de la Goal Car compris, comme AStarSolver.
+ * Pour l'instrumentation, chaque niveau developpe (d'un cote ou de l'autre) forme un niveau
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class BidirectionalSolver {
+	static final int MAX_GOALS = 1 << 20; //Nombre maximal de dispositions finales (au-dela: recherche A*)
+
+	final SolverContext _context; //Probleme a resoudre
+	final SolverScratch _scratch; //Tampons du thread
+	final Side _forward; //Parcours partant de la racine (arbre scratch._paths)
+	final Side _backward; //Parcours partant des dispositions finales (arbre scratch._goalPaths)
+	long _meetingKey; //Premiere disposition atteinte par les deux parcours
+	long _expanded, _generated, _duplicates; //Mesures du niveau en cours
+
+	BidirectionalSolver(SolverContext context, SolverScratch scratch) {
+		_context = context;
+		_scratch = scratch;
+		_forward = new Side(scratch._paths, scratch._level, scratch._nextLevel);
+		_backward = new Side(scratch._goalPaths, new Frontier(), new Frontier());
+	}
+
+	static Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe (ou si la resolution
+		 * est abandonnee). Si les dispositions finales sont trop nombreuses pour etre enumerees, la
+		 * solution (de meme longueur) est calculee par AStarSolver.
+		 */
+		SolverContext context = root.getContext();
+		SolverScratch scratch = SolverScratch.acquire(context); //Tampons du thread, remis a zero
+		root._index = scratch._paths.reset(root);
+		BidirectionalSolver solver = new BidirectionalSolver(context, scratch);
+		if (!solver.addGoals(root)) return AStarSolver.solveParking(root);
+		SearchStats.Search stats = SearchStats.begin("bidir"); //Mesures par niveau (null si desactivees)
+
+		//Si la Goal Car est deja libre, la mener a la sortie est optimal
+		Parking alreadySolved = root.isSolved(scratch);
+		if (alreadySolved != null) {
+			if (stats != null) stats.end(true);
+			return alreadySolved;
+		}
+
+		solver._forward._indices.put(root._key, root._index);
+		solver._forward._level.add(root._key, root._index);
+		return solver.solve(root, stats);
+	}
+
+	private Parking solve(Parking root, SearchStats.Search stats) {
+		/*
+		 * Developpe alternativement les niveaux des deux parcours jusqu'a leur rencontre, et retourne la
+		 * solution passant par la disposition commune (null si l'un des parcours s'epuise avant). Les
+		 * mesures de chaque niveau sont retenues dans stats (s'il n'est pas null).
+		 */
+		Parking cursor = new Parking(_context, root._carPositions.clone(), root._key); //Parking developpe
+
+		while (_forward._level.size() > 0 && _backward._level.size() > 0) {
+			if (_scratch.checkLimits()) break; //Resolution arretee par une de ses limites
+			boolean forward = _forward._level.size() <= _backward._level.size(); //Plus petit niveau d'abord
+			Side side = forward ? _forward : _backward, other = forward ? _backward : _forward;
+			int frontier = side._level.size();
+			_expanded = _generated = _duplicates = 0;
+			if (stats != null) stats.beginLevel();
+
+			int meeting = expandLevel(side, other, cursor); //Index de la rencontre dans l'arbre de side
+			if (stats != null) stats.endLevel(frontier, _expanded, _generated, _duplicates,
+					_forward._indices.size() + _backward._indices.size());
+			if (meeting >= 0) {
+				if (stats != null) stats.end(true);
+				int otherIndex = other._indices.get(_meetingKey, -1);
+				return forward ? join(meeting, otherIndex) : join(otherIndex, meeting);
+			}
+		}
+
+		if (stats != null) stats.end(false);
+		return null; //Aucune solution trouvee
+	}
+
+	private int expandLevel(Side side, Side other, Parking cursor) {
+		/*
+		 * Developpe le niveau en cours de side et remplit son niveau suivant. Des qu'un Parking genere a
+		 * deja ete atteint par other, il est indexe dans l'arbre de side, sa cle est retenue dans _meetingKey
+		 * et son index est retourne. Sinon, retourne -1.
+		 */
+		Frontier level = side._level;
+		for (int rank=0; rank<level.size() && !_scratch.stopped(); rank++) {
+			cursor.load(level._keys[rank], level._indices[rank], side._paths);
+			int childrenCount = cursor.expand(_scratch, cursor._movedCar); //Deplacements canoniques
+			_expanded++;
+
+			for (int child=0; child<childrenCount; child++) {
+				long childKey = _scratch._childKeys[child];
+				if (side._indices.get(childKey, -1) >= 0) {
+					_duplicates++;
+					continue;
+				}
+				int index = side._paths.add(cursor._index, _scratch._childCars[child], _scratch._childMoves[child]);
+				//Premiere disposition commune aux deux parcours: les niveaux etant complets, le chemin est optimal
+				if (other._indices.get(childKey, -1) >= 0) {
+					_generated += child+1;
+					_meetingKey = childKey;
+					return index;
+				}
+				side._indices.put(childKey, index);
+				side._nextLevel.add(childKey, index);
+			}
+			_generated += childrenCount;
+		}
+		side.swapLevels();
+		return -1;
+	}
+
+	private Parking join(int forwardIndex, int backwardIndex) {
+		/*
+		 * Indexe dans scratch._paths la suite du chemin menant du Parking d'index forwardIndex (parcours
+		 * direct) a la disposition finale de la branche backwardIndex (parcours inverse, parcourue en
+		 * annulant chacun de ses deplacements), et retourne la feuille de la solution reconstruite.
+		 */
+		PathStore goalPaths = _backward._paths;
+		int index = forwardIndex;
+		for (int step=backwardIndex; goalPaths.parent(step) != PathStore.NO_PARENT; step=goalPaths.parent(step)) {
+			index = _forward._paths.add(index, goalPaths.movedCar(step), -goalPaths.move(step));
+		}
+		return _forward._paths.replay(index);
+	}
+
+	private boolean addGoals(Parking root) {
+		/*
+		 * Place au premier niveau du parcours inverse toutes les dispositions ou la Goal Car est a la
+		 * sortie, chaque autre voiture deplacee par la recherche (SolverContext._movingCars) occupant une
+		 * position de la portion de sa rangee qu'elle peut balayer a partir de root, sans changer d'ordre
+		 * avec les voitures partageant sa rangee (elles ne peuvent pas se croiser); les autres voitures
+		 * restent a leur position. Les dispositions ecartees ne sont pas atteignables a partir de root.
+		 * Retourne false si elles sont plus de MAX_GOALS.
+		 */
+		long[] occupied = _context._walls.clone(); //Murs et voitures immobiles, puis voitures placees
+		boolean[] moving = new boolean[_context._carsCount];
+		for (int carIndex : _context._movingCars) moving[carIndex] = true;
+		for (int carIndex=0; carIndex<_context._carsCount; carIndex++) {
+			if (!moving[carIndex] && carIndex != 0) place(occupied, carIndex, root._carPositions[carIndex]);
+		}
+
+		//Portion de rangee de chaque voiture mobile: positions contigues a la sienne, sans case fixe
+		int[] movingCars = _context._movingCars;
+		StateRanking ranking = new StateRanking(root);
+		int[] lowest = ranking._lowest.clone(), highest = ranking._highest.clone();
+
+		//La Goal Car est a la sortie, si sa portion de rangee l'atteint
+		int exitGoalPosition = _context.exitGoalPosition();
+		int[] positions = root._carPositions.clone();
+		positions[0] = exitGoalPosition;
+		for (int i=0; i<movingCars.length; i++) {
+			if (movingCars[i] != 0) continue;
+			if (exitGoalPosition < lowest[i] || exitGoalPosition > highest[i]) return true; //Aucune disposition finale
+			lowest[i] = highest[i] = exitGoalPosition;
+		}
+		if (overlaps(occupied, 0, exitGoalPosition)) return true;
+		place(occupied, 0, exitGoalPosition);
+		return enumerateGoals(0, positions, occupied, lowest, highest, root._carPositions);
+	}
+
+	private boolean enumerateGoals(int i, int[] positions, long[] occupied, int[] lowest, int[] highest,
+			int[] rootPositions) {
+		/*
+		 * Place les voitures mobiles d'indices i et suivants (dans _movingCars) a chacune de leurs positions
+		 * libres dans occupied respectant l'ordre de rootPositions dans leur rangee, et ajoute au parcours
+		 * inverse chaque disposition complete. Retourne false des que plus de MAX_GOALS dispositions ont
+		 * ete ajoutees.
+		 */
+		if (i == _context._movingCars.length) {
+			if (_backward._indices.size() == MAX_GOALS) return false;
+			long key = _context.packPositions(positions);
+			int index = _backward._paths.addRoot();
+			_backward._indices.put(key, index);
+			_backward._level.add(key, index);
+			return true;
+		}
+		int carIndex = _context._movingCars[i];
+		if (carIndex == 0) return enumerateGoals(i+1, positions, occupied, lowest, highest, rootPositions); //Deja placee
+		for (int position=lowest[i]; position<=highest[i]; position++) {
+			if (overlaps(occupied, carIndex, position)) continue;
+			positions[carIndex] = position;
+			if (!keepsLaneOrder(i, positions, rootPositions)) continue;
+			place(occupied, carIndex, position);
+			boolean enumerated = enumerateGoals(i+1, positions, occupied, lowest, highest, rootPositions);
+			place(occupied, carIndex, position); //Retire la voiture (ou exclusif)
+			if (!enumerated) return false;
+		}
+		return true;
+	}
+
+	private boolean keepsLaneOrder(int i, int[] positions, int[] rootPositions) {
+		/*
+		 * Retourne true si la voiture mobile d'indice i (dans _movingCars) est placee dans positions du meme
+		 * cote que dans rootPositions de chaque voiture mobile deja placee de sa rangee.
+		 */
+		int carIndex = _context._movingCars[i];
+		for (int j=0; j<i; j++) {
+			int other = _context._movingCars[j];
+			if (_context._carOrientations[other] != _context._carOrientations[carIndex]
+					|| _context._carRanges[other] != _context._carRanges[carIndex]) continue;
+			if ((positions[other] < positions[carIndex]) != (rootPositions[other] < rootPositions[carIndex])) return false;
+		}
+		return true;
+	}
+
+	private boolean overlaps(long[] occupied, int carIndex, int position) {
+		/*
+		 * Retourne true si la voiture carIndex, en position position, occupe une case de occupied.
+		 */
+		long[] carMasks = _context._carMasks[carIndex];
+		for (int word=0; word<_context._words; word++) {
+			if ((occupied[word] & carMasks[position*_context._words+word]) != 0) return true;
+		}
+		return false;
+	}
+
+	private void place(long[] occupied, int carIndex, int position) {
+		/*
+		 * Inverse dans occupied les cases de la voiture carIndex en position position (l'y place, ou l'en
+		 * retire si elle y est deja).
+		 */
+		long[] carMasks = _context._carMasks[carIndex];
+		for (int word=0; word<_context._words; word++) occupied[word] ^= carMasks[position*_context._words+word];
+	}
+
+	static final class Side {
+		final PathStore _paths; //Parent et deplacement de chaque Parking atteint par ce parcours
+		final LongIntHashMap _indices = new LongIntHashMap(); //Index dans _paths de chaque Parking atteint
+		Frontier _level; //Niveau en cours de parcours
+		Frontier _nextLevel; //Niveau suivant
+
+		Side(PathStore paths, Frontier level, Frontier nextLevel) {
+			_paths = paths;
+			_level = level;
+			_nextLevel = nextLevel;
+		}
+
+		void swapLevels() {
+			/*
+			 * Le niveau suivant devient le niveau en cours, et l'ancien niveau est vide pour etre rempli.
+			 */
+			Frontier swap = _level;
+			_level = _nextLevel;
+			_nextLevel = swap;
+			_nextLevel.clear();
+		}
+	}
+}
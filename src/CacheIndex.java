@@ -0,0 +1,177 @@
+/**
+ * Index du fichier d'un SolutionCache, range dans un second fichier projete en memoire: une table a
+ * adressage ouvert (sondage lineaire) associe a l'empreinte de chaque cle la position de son
+ * enregistrement. La memoire du tas utilisee ne depend donc pas du nombre de solutions du fichier; deux
+ * cles de meme empreinte sont departagees en relisant la cle de l'enregistrement. L'en-tete retient la
+ * taille de la partie du fichier deja indexee: seuls les enregistrements suivants sont relus a l'ouverture
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.File; //fichier de l'index
+import java.io.IOException; //erreurs de lecture et d'ecriture
+import java.io.RandomAccessFile; //ouverture du fichier a projeter, relecture des cles
+import java.nio.LongBuffer; //en-tete et cases de la table
+import java.nio.channels.FileChannel; //projection du fichier
+
+public class CacheIndex {
+	static final long MAGIC = 0x5542434958000001L; //Signature et version du fichier ("UBCIX", version 1)
+	static final int HEADER_WORDS = 4; //En-tete: signature, nombre de cases, nombre de cles, taille indexee
+	static final int SLOT_WORDS = 2; //Case: empreinte de la cle, position de l'enregistrement + 1 (0: case vide)
+	static final int MIN_CAPACITY = 1 << 10; //Nombre de cases d'un index vide
+	static final int MAX_CAPACITY = 1 << 26; //Nombre maximal de cases (projection de moins de 2 Go)
+
+	final File _file; //Fichier de l'index
+	RandomAccessFile _access; //Fichier ouvert, projete dans _words
+	LongBuffer _words; //En-tete puis cases de la table
+	int _mask; //Nombre de cases - 1 (puissance de 2)
+
+	public CacheIndex(File file) throws IOException {
+		/*
+		 * Ouvre l'index enregistre dans file, ou un index vide si file n'existe pas ou ne contient pas un
+		 * index valide.
+		 */
+		_file = file;
+		if (file.exists() && open(file)) return;
+		create(file, MIN_CAPACITY);
+	}
+
+	private boolean open(File file) throws IOException {
+		/*
+		 * Projette l'index de file et retourne true si son en-tete est valide (sinon, file est ferme).
+		 */
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		long length = access.length();
+		if (length >= HEADER_WORDS*Long.BYTES) {
+			LongBuffer words = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length).asLongBuffer();
+			long capacity = words.get(1);
+			if (words.get(0) == MAGIC && Long.bitCount(capacity) == 1 && capacity <= MAX_CAPACITY
+					&& length == (HEADER_WORDS + SLOT_WORDS*capacity) * Long.BYTES) {
+				_access = access;
+				_words = words;
+				_mask = (int) capacity - 1;
+				return true;
+			}
+		}
+		access.close();
+		return false;
+	}
+
+	private void create(File file, int capacity) throws IOException {
+		/*
+		 * Remplace file par un index vide de capacity cases, et le projette.
+		 */
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		long length = (HEADER_WORDS + (long) SLOT_WORDS*capacity) * Long.BYTES;
+		access.setLength(0); //Cases remises a zero
+		access.setLength(length);
+		_access = access;
+		_words = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length).asLongBuffer();
+		_words.put(0, MAGIC).put(1, capacity);
+		_mask = capacity - 1;
+	}
+
+	static long fingerprint(String key) {
+		/*
+		 * Retourne l'empreinte de 64 bits de key (FNV-1a sur ses caracteres).
+		 */
+		long hash = 0xCBF29CE484222325L;
+		for (int i=0; i<key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	public long find(String key, RandomAccessFile records) throws IOException {
+		/*
+		 * Retourne la position, dans records, de ce qui suit la cle key dans son enregistrement, ou -1 si
+		 * key n'est pas indexee.
+		 */
+		long fingerprint = fingerprint(key);
+		for (int slot=LongHashSet.hash(fingerprint) & _mask; ; slot=(slot+1) & _mask) {
+			int word = HEADER_WORDS + SLOT_WORDS*slot;
+			long position = _words.get(word+1);
+			if (position == 0) return -1;
+			if (_words.get(word) != fingerprint) continue;
+			records.seek(position-1);
+			if (records.readUTF().equals(key)) return records.getFilePointer();
+		}
+	}
+
+	public void put(String key, long position) throws IOException {
+		/*
+		 * Indexe l'enregistrement de cle key commencant a la position position de son fichier.
+		 */
+		if (size()+1 > (_mask+1) / 2) grow(); //Taux de remplissage maximal de LongHashSet
+		insert(fingerprint(key), position+1);
+		_words.put(2, size()+1);
+	}
+
+	private void insert(long fingerprint, long storedPosition) {
+		/*
+		 * Range dans la premiere case libre de son sondage l'empreinte fingerprint et la position
+		 * (deja augmentee de 1) storedPosition.
+		 */
+		int slot = LongHashSet.hash(fingerprint) & _mask;
+		while (_words.get(HEADER_WORDS + SLOT_WORDS*slot + 1) != 0) slot = (slot+1) & _mask;
+		_words.put(HEADER_WORDS + SLOT_WORDS*slot, fingerprint);
+		_words.put(HEADER_WORDS + SLOT_WORDS*slot + 1, storedPosition);
+	}
+
+	private void grow() throws IOException {
+		/*
+		 * Double le nombre de cases: la nouvelle table est construite dans un fichier voisin, qui remplace
+		 * ensuite celui de l'index.
+		 */
+		int capacity = _mask+1;
+		if (capacity >= MAX_CAPACITY) throw new IOException("index du cache plein");
+		LongBuffer old = _words;
+		RandomAccessFile oldAccess = _access;
+		File grown = new File(_file.getPath() + ".tmp");
+		create(grown, 2*capacity);
+		for (int slot=0; slot<capacity; slot++) {
+			long storedPosition = old.get(HEADER_WORDS + SLOT_WORDS*slot + 1);
+			if (storedPosition != 0) insert(old.get(HEADER_WORDS + SLOT_WORDS*slot), storedPosition);
+		}
+		_words.put(2, old.get(2)).put(3, old.get(3));
+		oldAccess.close();
+		if (!grown.renameTo(_file)) throw new IOException("impossible de remplacer " + _file);
+	}
+
+	public long size() {
+		/*
+		 * Retourne le nombre de cles indexees.
+		 */
+		return _words.get(2);
+	}
+
+	public long indexedLength() {
+		/*
+		 * Retourne la taille de la partie du fichier des solutions dont les enregistrements sont indexes.
+		 */
+		return _words.get(3);
+	}
+
+	public void setIndexedLength(long length) {
+		/*
+		 * Retient que les enregistrements des length premiers octets du fichier des solutions sont indexes.
+		 */
+		_words.put(3, length);
+	}
+
+	public void clear() throws IOException {
+		/*
+		 * Retire toutes les cles (l'index ne correspond pas au fichier des solutions).
+		 */
+		_access.close();
+		create(_file, MIN_CAPACITY);
+	}
+
+	public void close() throws IOException {
+		/*
+		 * Ferme le fichier de l'index (ses modifications sont deja dans la projection).
+		 */
+		_access.close();
+	}
+}
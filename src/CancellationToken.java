@@ -0,0 +1,25 @@
+/**
+ * Jeton d'annulation de resolutions: une fois annule, toute resolution a laquelle il a ete confie
+ * s'arrete a sa prochaine verification des limites (au plus tard apres SolverScratch.STOP_CHECK
+ * Parkings developpes) et rend un resultat SolveResult.Status.CANCELLED
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class CancellationToken {
+	volatile boolean _cancelled; //Annulation demandee
+
+	public void cancel() {
+		/*
+		 * Demande l'arret des resolutions portant ce jeton.
+		 */
+		_cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		/*
+		 * Retourne true si l'annulation a ete demandee.
+		 */
+		return _cancelled;
+	}
+}
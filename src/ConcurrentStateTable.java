@@ -0,0 +1,135 @@
+/**
+ * Table des Parkings generes partagee entre threads: a chaque cle est associe le proprietaire qui l'a
+ * generee (niveau du parcours et rang du Parking parent). La table est decoupee en segments
+ * independants, chacun protege par son propre verrou, pour limiter la contention
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class ConcurrentStateTable {
+	static final float MAX_LOAD = 0.5f; //Taux de remplissage maximal d'un segment avant agrandissement
+
+	final Stripe[] _stripes; //Segments de la table
+	final int _stripeShift; //Decalage donnant le segment d'une cle a partir de son hash
+
+	public ConcurrentStateTable(int threads) {
+		/*
+		 * Construit une table vide, avec assez de segments pour que threads threads y accedent sans
+		 * se bloquer mutuellement la plupart du temps.
+		 */
+		int stripesCount = Integer.highestOneBit(Math.max(1, threads) * 64 - 1) << 1;
+		_stripes = new Stripe[stripesCount];
+		for (int i=0; i<stripesCount; i++) _stripes[i] = new Stripe();
+		_stripeShift = Integer.SIZE - Integer.numberOfTrailingZeros(stripesCount);
+	}
+
+	public static long owner(int level, int rank) {
+		/*
+		 * Retourne le proprietaire d'une cle generee au niveau level par le Parking de rang rank.
+		 * Le niveau est decale de 1 pour qu'un proprietaire ne soit jamais nul (0 = case libre).
+		 */
+		return ((long) (level + 1) << 32) | rank;
+	}
+
+	public boolean claim(long key, long owner) {
+		/*
+		 * Tente de faire de owner le proprietaire de key. Reussit si la cle est nouvelle, ou si elle a ete
+		 * generee au meme niveau par un Parking de rang superieur (le parcours sequentiel l'aurait
+		 * d'abord obtenue par owner). Echoue si la cle appartient a un niveau precedent ou a un rang inferieur.
+		 */
+		int hash = LongHashSet.hash(key);
+		return _stripes[hash >>> _stripeShift].claim(key, hash, owner);
+	}
+
+	public long ownerOf(long key) {
+		/*
+		 * Retourne le proprietaire actuel de key, 0 si la cle n'a jamais ete generee.
+		 */
+		int hash = LongHashSet.hash(key);
+		return _stripes[hash >>> _stripeShift].ownerOf(key, hash);
+	}
+
+	public long size() {
+		/*
+		 * Retourne le nombre de cles de la table (a n'appeler qu'en dehors des phases paralleles).
+		 */
+		long size = 0;
+		for (Stripe stripe : _stripes) size += stripe._size;
+		return size;
+	}
+
+	static final class Stripe {
+		long[] _keys = new long[64]; //Cles du segment (0 = case vide)
+		long[] _owners = new long[64]; //Proprietaire de chaque cle
+		long _zeroOwner; //Proprietaire de la cle 0, stockee a part
+		int _size;
+
+		synchronized boolean claim(long key, int hash, long owner) {
+			/*
+			 * Voir ConcurrentStateTable.claim.
+			 */
+			if (key == 0) {
+				if (!takes(_zeroOwner, owner)) return false;
+				if (_zeroOwner == 0) _size += 1;
+				_zeroOwner = owner;
+				return true;
+			}
+			int mask = _keys.length - 1;
+			int slot = hash & mask;
+			long current;
+			while ((current = _keys[slot]) != 0) {
+				if (current == key) {
+					if (!takes(_owners[slot], owner)) return false;
+					_owners[slot] = owner;
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+			_keys[slot] = key;
+			_owners[slot] = owner;
+			if (++_size >= _keys.length * MAX_LOAD) rehash();
+			return true;
+		}
+
+		synchronized long ownerOf(long key, int hash) {
+			/*
+			 * Voir ConcurrentStateTable.ownerOf.
+			 */
+			if (key == 0) return _zeroOwner;
+			int mask = _keys.length - 1;
+			int slot = hash & mask;
+			long current;
+			while ((current = _keys[slot]) != 0) {
+				if (current == key) return _owners[slot];
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		static boolean takes(long current, long owner) {
+			/*
+			 * Retourne true si owner l'emporte sur le proprietaire current: case libre, ou meme niveau
+			 * et rang inferieur.
+			 */
+			return current == 0 || ((current >>> 32) == (owner >>> 32) && owner < current);
+		}
+
+		private void rehash() {
+			/*
+			 * Double la taille du segment et y replace toutes les cles.
+			 */
+			long[] oldKeys = _keys, oldOwners = _owners;
+			_keys = new long[oldKeys.length << 1];
+			_owners = new long[oldKeys.length << 1];
+			int mask = _keys.length - 1;
+			for (int i=0; i<oldKeys.length; i++) {
+				if (oldKeys[i] != 0) {
+					int slot = LongHashSet.hash(oldKeys[i]) & mask;
+					while (_keys[slot] != 0) slot = (slot + 1) & mask;
+					_keys[slot] = oldKeys[i];
+					_owners[slot] = oldOwners[i];
+				}
+			}
+		}
+	}
+}
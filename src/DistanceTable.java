@@ -0,0 +1,240 @@
+/**
+ * Table des distances a la sortie de toutes les dispositions atteignables a partir d'un Parking: la
+ * composante est enumeree une fois, les distances exactes sont calculees par un parcours en largeur
+ * partant des dispositions ou la Goal Car est a la sortie, puis la table (cles triees et distances)
+ * est enregistree dans un fichier projete en memoire. Toute question sur un Parking de la composante
+ * (distance optimale, prochain deplacement, chemin complet) est ensuite resolue sans recherche
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.File; //fichier de la table
+import java.io.IOException; //erreurs de lecture et d'ecriture
+import java.io.RandomAccessFile; //ouverture du fichier a projeter
+import java.nio.ByteBuffer; //contenu du fichier
+import java.nio.LongBuffer; //cles triees
+import java.nio.MappedByteBuffer; //fichier projete en memoire
+import java.nio.ShortBuffer; //distances
+import java.nio.channels.FileChannel; //projection du fichier
+import java.util.Arrays; //tri des cles, agrandissement des tableaux
+
+public class DistanceTable {
+	static final int MAGIC = 0x55424454; //Signature du fichier ("UBDT")
+	static final int VERSION = 2; //Version du format du fichier (2: masque des murs dans l'en-tete)
+	static final int UNREACHABLE = 0xFFFF; //Distance d'une disposition d'ou la sortie est inatteignable
+
+	final SolverContext _context; //Probleme dont la table decrit la composante
+	final LongBuffer _keys; //Cles des dispositions de la composante, triees
+	final ShortBuffer _distances; //Distance a la sortie de chaque cle (non signee)
+
+	DistanceTable(SolverContext context, LongBuffer keys, ShortBuffer distances) {
+		_context = context;
+		_keys = keys;
+		_distances = distances;
+	}
+
+	public static DistanceTable open(File file, Parking root) throws IOException {
+		/*
+		 * Retourne la table de la composante de root enregistree dans file, ou, si file n'existe pas, la
+		 * construit et l'y enregistre d'abord (null si la construction est arretee par une des limites de
+		 * la resolution, voir build). Echoue si la table de file decrit un autre probleme ou une autre
+		 * composante.
+		 */
+		if (!root.getContext().fitsKey()) throw new IOException("la table ne gere que les cles d'un mot de 64 bits");
+		if (!file.exists()) {
+			DistanceTable built = build(root);
+			if (built == null) return null;
+			built.save(file);
+		}
+		DistanceTable table = load(file, root.getContext());
+		if (table.distanceOf(root._key) < 0) {
+			throw new IOException("le Parking n'appartient pas a la composante de la table");
+		}
+		return table;
+	}
+
+	public static DistanceTable build(Parking root) {
+		/*
+		 * Enumere toutes les dispositions atteignables a partir de root, puis calcule la distance a la
+		 * sortie de chacune par un parcours en largeur partant de celles ou la Goal Car est a la sortie
+		 * (les deplacements etant reversibles, ce parcours suit les memes aretes en sens inverse).
+		 * L'enumeration respecte les limites de la resolution du thread (Escape.solve), les dispositions
+		 * enumerees comptant dans son budget memoire: retourne null si l'une d'elles est atteinte.
+		 */
+		SolverContext context = root.getContext();
+		SolverScratch scratch = SolverScratch.acquireForExpansion(context);
+		LongIntHashMap indices = new LongIntHashMap(); //Index de chaque cle dans l'ordre de decouverte
+		long[] keys = new long[1 << 10]; //Cles dans l'ordre de decouverte
+		int[] exitQueue = new int[1 << 10]; //File du parcours inverse, amorcee par les dispositions finales
+		int count = 0, exitCount = 0;
+		int exitGoalPosition = context.exitGoalPosition();
+		scratch._enumerated = 0;
+
+		//ENUMERATION DE LA COMPOSANTE (le tableau des cles sert de file)
+		keys[count] = root._key;
+		indices.put(root._key, count++);
+		for (int index=0; index<count; index++) {
+			scratch._enumerated = count;
+			if (scratch.stopped()) return null; //Enumeration arretee par une des limites de la resolution
+			Parking parking = new Parking(context, context.unpackPositions(keys[index]), keys[index]);
+			if (parking._carPositions[0] == exitGoalPosition) {
+				if (exitCount == exitQueue.length) exitQueue = Arrays.copyOf(exitQueue, exitCount << 1);
+				exitQueue[exitCount++] = index;
+			}
+			int childrenCount = parking.expand(scratch);
+			for (int child=0; child<childrenCount; child++) {
+				long childKey = scratch._childKeys[child];
+				if (indices.get(childKey, -1) >= 0) continue;
+				if (count == keys.length) keys = Arrays.copyOf(keys, count << 1);
+				keys[count] = childKey;
+				indices.put(childKey, count++);
+			}
+		}
+
+		//PARCOURS INVERSE depuis les dispositions finales (distance 0)
+		char[] distances = new char[count];
+		Arrays.fill(distances, (char) UNREACHABLE);
+		int[] queue = Arrays.copyOf(exitQueue, count);
+		for (int i=0; i<exitCount; i++) distances[queue[i]] = 0;
+		for (int head=0, tail=exitCount; head<tail; head++) {
+			int index = queue[head];
+			if (distances[index]+1 >= UNREACHABLE) throw new IllegalStateException("distance trop grande pour la table");
+			Parking parking = new Parking(context, context.unpackPositions(keys[index]), keys[index]);
+			int childrenCount = parking.expand(scratch);
+			for (int child=0; child<childrenCount; child++) {
+				int childIndex = indices.get(scratch._childKeys[child], -1);
+				if (distances[childIndex] != UNREACHABLE) continue;
+				distances[childIndex] = (char) (distances[index]+1);
+				queue[tail++] = childIndex;
+			}
+		}
+
+		//TRI DES CLES pour la recherche dichotomique
+		long[] sortedKeys = Arrays.copyOf(keys, count);
+		Arrays.sort(sortedKeys);
+		short[] sortedDistances = new short[count];
+		for (int i=0; i<count; i++) sortedDistances[i] = (short) distances[indices.get(sortedKeys[i], -1)];
+		return new DistanceTable(context, LongBuffer.wrap(sortedKeys), ShortBuffer.wrap(sortedDistances));
+	}
+
+	public void save(File file) throws IOException {
+		/*
+		 * Enregistre la table dans file: en-tete decrivant le probleme, nombre de cles, cles triees puis
+		 * distances.
+		 */
+		ByteBuffer header = header(_context);
+		int count = _keys.limit();
+		long size = header.limit() + (long) Long.BYTES + (long) count*(Long.BYTES + Short.BYTES);
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw"); FileChannel channel = output.getChannel()) {
+			output.setLength(size);
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mapped.put(header);
+			mapped.putLong(count);
+			mapped.asLongBuffer().put(_keys.duplicate().rewind());
+			mapped.position(mapped.position() + count*Long.BYTES);
+			mapped.asShortBuffer().put(_distances.duplicate().rewind());
+			mapped.force();
+		}
+	}
+
+	public static DistanceTable load(File file, SolverContext context) throws IOException {
+		/*
+		 * Projette en memoire la table enregistree dans file, apres avoir verifie qu'elle decrit le
+		 * probleme context.
+		 */
+		try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer header = header(context);
+			if (mapped.limit() < header.limit() + Long.BYTES
+					|| !mapped.slice().limit(header.limit()).equals(header)) {
+				throw new IOException("la table ne correspond pas a ce parking");
+			}
+			mapped.position(header.limit());
+			long count = mapped.getLong();
+			if (mapped.remaining() != count*(Long.BYTES + Short.BYTES)) {
+				throw new IOException("la table est tronquee");
+			}
+			LongBuffer keys = mapped.slice().asLongBuffer().limit((int) count);
+			mapped.position(mapped.position() + (int) count*Long.BYTES);
+			ShortBuffer distances = mapped.slice().asShortBuffer().limit((int) count);
+			return new DistanceTable(context, keys, distances);
+		}
+	}
+
+	private static ByteBuffer header(SolverContext context) {
+		/*
+		 * Retourne l'en-tete decrivant context (dimensions, sortie, voitures, murs et mesure des
+		 * deplacements), complete pour que les cles qui le suivent soient alignees sur 8 octets.
+		 */
+		int size = Integer.BYTES * (9 + 3*context._carsCount);
+		size = (size + Long.BYTES-1) / Long.BYTES * Long.BYTES; //Masque des murs aligne sur 8 octets
+		ByteBuffer header = ByteBuffer.allocate(size + Long.BYTES*context._walls.length);
+		header.putInt(MAGIC).putInt(VERSION);
+		header.putInt(context._width).putInt(context._height).putInt(context._exitX).putInt(context._exitY);
+		header.putInt(context._slideMoves ? 1 : 0).putInt(context._carsCount);
+		for (int carIndex=0; carIndex<context._carsCount; carIndex++) {
+			header.putInt(context._carOrientations[carIndex] ? 1 : 0);
+			header.putInt(context._carRanges[carIndex]);
+			header.putInt(context._carSizes[carIndex]);
+		}
+		header.position(size);
+		for (long word : context._walls) header.putLong(word);
+		header.rewind();
+		return header;
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de dispositions de la composante.
+		 */
+		return _keys.limit();
+	}
+
+	public int distanceOf(long key) {
+		/*
+		 * Retourne le nombre minimal de deplacements menant la Goal Car de la disposition key a la sortie,
+		 * UNREACHABLE si elle ne peut l'atteindre, ou -1 si key n'appartient pas a la composante.
+		 */
+		int low = 0, high = _keys.limit()-1;
+		while (low <= high) { //Recherche dichotomique
+			int middle = (low + high) >>> 1;
+			long current = _keys.get(middle);
+			if (current < key) low = middle+1;
+			else if (current > key) high = middle-1;
+			else return _distances.get(middle) & 0xFFFF;
+		}
+		return -1;
+	}
+
+	public Parking nextStep(Parking parking, SolverScratch scratch) {
+		/*
+		 * Retourne le Parking obtenu par un deplacement optimal a partir de parking, relie a lui par un
+		 * Move, ou null si la Goal Car est deja a la sortie ou ne peut pas l'atteindre.
+		 */
+		int distance = distanceOf(parking._key);
+		if (distance <= 0 || distance == UNREACHABLE) return null;
+		int childrenCount = parking.expand(scratch);
+		for (int child=0; child<childrenCount; child++) {
+			if (distanceOf(scratch._childKeys[child]) == distance-1) {
+				Parking nextParking = parking.newChild(scratch._childCars[child], scratch._childMoves[child],
+						scratch._childKeys[child]);
+				new Move(parking, nextParking, scratch._childCars[child]); //Mouvement reliant les Parkings
+				return nextParking;
+			}
+		}
+		return null; //Table incoherente avec le probleme
+	}
+
+	public Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe. Chaque etape est lue
+		 * dans la table, sans recherche.
+		 */
+		if (distanceOf(root._key) == UNREACHABLE) return null;
+		SolverScratch scratch = SolverScratch.acquireForExpansion(_context);
+		Parking step = root;
+		for (Parking nextStep; (nextStep = nextStep(step, scratch)) != null; ) step = nextStep;
+		return step;
+	}
+}
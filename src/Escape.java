@@ -4,48 +4,345 @@
  * @author Allan Muranovic
  */
 
-import java.util.ArrayList;
-import java.util.ListIterator;
-import java.util.Stack;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
 
 public class Escape {
+	static final int CACHE_CAPACITY = 1024; // Nombre de solutions du cache conservees en memoire
 
 	public static void main(String[] args) {
 
+		// Lecture des arguments: fichier du Parking, puis options
+		String filename = null;
+		int threads = 1; // Nombre de threads du parcours (1: parcours sequentiel)
+		String engine = "bfs"; // Algorithme de recherche: bfs (parcours en largeur), astar, ida, anytime ou bidir
+		boolean slideMoves = false; // Mesure des deplacements: step (une position) ou slide (glissement)
+		String tableFilename = null; // Table des distances de la composante (construite si absente)
+		String cacheFilename = null; // Fichier du cache des solutions (complete a chaque nouvelle solution)
+		String batchFilename = null; // Liste des fichiers a resoudre en mode batch ("-": entree standard)
+		int workers = Runtime.getRuntime().availableProcessors(); // Parkings resolus en parallele en mode batch
+		long timeoutMillis = 0; // Delai de resolution d'un Parking (0: aucun)
+		String outputMode = "text"; // Forme du resultat: text (detaille), moves (A+2 B-1 ...) ou json
+		boolean stats = false; // Instrumentation des recherches (JFR, JMX) et resume final des mesures
+		String generateSize = null; // Dimensions ("LxH") du plateau des Parkings a generer (null: resolution)
+		String carsRange = "2-" + PuzzleGenerator.MAX_CARS; // Nombre de voitures des Parkings generes ("min-max")
+		int exitY = -1; // Ligne de la sortie des Parkings generes (-1: ligne du milieu)
+		int count = 10; // Nombre de Parkings generes
+		int minMoves = 0; // Nombre minimal de deplacements d'un Parking genere
+		int maxStates = PuzzleGenerator.DEFAULT_MAX_STATES; // Nombre maximal de Parkings d'une disposition exploree
+		long maxLayouts = PuzzleGenerator.DEFAULT_MAX_LAYOUTS; // Nombre maximal de dispositions examinees (0: toutes)
+		long seed = 0; // Graine du tirage des dispositions examinees, si elles ne le sont pas toutes
+		String drawingsDirectory = null; // Repertoire des Parkings generes au format dessine (null: aucun)
+		String serveAddress = null; // Port TCP local ou chemin de socket Unix du mode serveur (null: aucun)
+		long budgetBytes = 0; // Memoire d'une resolution (0: aucune limite)
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--threads") && i+1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--engine") && i+1 < args.length) {
+				engine = args[++i];
+			}
+			else if (args[i].equals("--metric") && i+1 < args.length) {
+				slideMoves = args[++i].equals("slide");
+			}
+			else if (args[i].equals("--table") && i+1 < args.length) {
+				tableFilename = args[++i];
+			}
+			else if (args[i].equals("--cache") && i+1 < args.length) {
+				cacheFilename = args[++i];
+			}
+			else if (args[i].equals("--batch") && i+1 < args.length) {
+				batchFilename = args[++i];
+			}
+			else if (args[i].equals("--workers") && i+1 < args.length) {
+				workers = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--output") && i+1 < args.length) {
+				outputMode = args[++i];
+			}
+			else if (args[i].equals("--timeout") && i+1 < args.length) {
+				timeoutMillis = (long) (Double.parseDouble(args[++i]) * 1000); // En secondes
+			}
+			else if (args[i].equals("--memory") && i+1 < args.length) {
+				IDAStarSolver._tableMegabytes = Integer.parseInt(args[++i]); // Table de transposition (Mo par thread)
+			}
+			else if (args[i].equals("--bitmap") && i+1 < args.length) {
+				StateBitmap._maxMegabytes = Integer.parseInt(args[++i]); // Parkings generes, un bit par disposition (Mo par thread)
+			}
+			else if (args[i].equals("--stats")) {
+				stats = true;
+			}
+			else if (args[i].equals("--generate") && i+1 < args.length) {
+				generateSize = args[++i];
+			}
+			else if (args[i].equals("--cars") && i+1 < args.length) {
+				carsRange = args[++i];
+			}
+			else if (args[i].equals("--exit") && i+1 < args.length) {
+				exitY = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--count") && i+1 < args.length) {
+				count = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--min-moves") && i+1 < args.length) {
+				minMoves = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--max-states") && i+1 < args.length) {
+				maxStates = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--layouts") && i+1 < args.length) {
+				maxLayouts = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("--seed") && i+1 < args.length) {
+				seed = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("--drawings") && i+1 < args.length) {
+				drawingsDirectory = args[++i];
+			}
+			else if (args[i].equals("--serve") && i+1 < args.length) {
+				serveAddress = args[++i];
+			}
+			else if (args[i].equals("--budget") && i+1 < args.length) {
+				budgetBytes = Long.parseLong(args[++i]) << 20; // En Mo
+			}
+			else {
+				filename = args[i];
+			}
+		}
+
+		if (stats) SearchStats.enable();
+
+		// Mode serveur: resout les Parkings recus sur une socket locale, jusqu'a l'arret du processus
+		if (serveAddress != null) {
+			try {
+				// Le cache ecrit chaque solution des qu'elle est calculee: il n'a pas a etre ferme a l'arret
+				SolutionCache cache = cacheFilename == null ? null : new SolutionCache(new File(cacheFilename), CACHE_CAPACITY);
+				SolverServer server = new SolverServer(serveAddress, workers, timeoutMillis, engine, slideMoves, outputMode,
+						budgetBytes, cache);
+				Runtime.getRuntime().addShutdownHook(new Thread(server::close)); // Supprime la socket Unix
+				server.run(); // Compteurs consultables par JMX pendant le service (--stats)
+			}
+			catch (IOException exception) {
+				System.out.println("Error while serving : " + exception.getMessage());
+			}
+			return;
+		}
+
+		// Mode generation: Parkings les plus difficiles d'un plateau, au format d'une ligne
+		if (generateSize != null) {
+			try {
+				String[] size = generateSize.split("x");
+				String[] cars = carsRange.split("-");
+				int width = Integer.parseInt(size[0]), height = Integer.parseInt(size[1]);
+				PuzzleGenerator generator = new PuzzleGenerator(width, height, exitY<0 ? (height-1)/2 : exitY,
+						Integer.parseInt(cars[0]), Integer.parseInt(cars[cars.length-1]), slideMoves, minMoves, count,
+						maxStates, maxLayouts, seed, workers);
+				generator.write(generator.generate(), System.out, drawingsDirectory==null ? null : new File(drawingsDirectory));
+				System.err.println(generator.summary()); // La sortie standard reste lisible par --batch
+			}
+			catch (IllegalArgumentException | ArrayIndexOutOfBoundsException exception) {
+				System.out.println("Invalid generation : " + exception.getMessage());
+			}
+			catch (IOException exception) {
+				System.out.println("Error while writing : " + exception.getMessage());
+			}
+			catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
+		// Mode batch: resout tous les fichiers de la liste
+		if (batchFilename != null) {
+			try {
+				SolutionCache cache = cacheFilename == null ? null : new SolutionCache(new File(cacheFilename), CACHE_CAPACITY);
+				new BatchRunner(workers, timeoutMillis, SolverScratch.maxPathsFor(budgetBytes), engine, slideMoves, outputMode,
+						cache, System.out).run(batchFilename);
+				if (cache != null) {
+					cache.close();
+					printStats(String.format("Cache : %d solution(s) retrouvee(s), %d calculee(s)", cache.hits(),
+							cache.misses()), outputMode);
+				}
+				if (stats) printStats(SearchStats.enable().totals(), outputMode);
+			}
+			catch (IOException exception) {
+				System.out.println("Error while reading : " + exception.getMessage());
+			}
+			catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
 		// Effectue la lecture du fichier et l'initialisation de la racine de l'arbre
-		Parking root = parseFileToParking(args[0]);
+		Parking root = parseFileToParking(filename);
+		if (root == null) return;
+		if (slideMoves) root = new Parking(root.getContext().withSlideMoves(true), root._carPositions);
 
 		// Verifie la possibilite d'une solution
+		Renderer renderer = new Renderer(); // Resultat mis en forme, ecrit en une seule fois
 		String impossibleMessage = root.isImpossible();
 		if (impossibleMessage != "") {	//Solution impossible
-			System.out.println("Situation :");
-			root.print();
-			System.out.println(String.format("Il n'y a pas de solution car %s", impossibleMessage));
+			if (outputMode.equals("moves")) System.err.println(impossibleMessage); // Raison absente du resultat compact
+			renderer.result(outputMode, null, root, null, impossibleMessage).flush(System.out);
 		}
 		else {							//Solution possible
 			// On genere la meilleure solution
-			Parking solution = solveParking(root);
-
-			//S'il n'y a pas de solution
-			if (solution==null) {
-				System.out.println("Situation :");
-				root.print();
-				System.out.println("Il n'y a pas de solution au problème");
+			Parking solution;
+			String failure = null; // Raison de l'arret de la resolution avant son terme (null: aucune)
+			long deadline = timeoutMillis == 0 ? 0 : System.nanoTime() + timeoutMillis*1000000;
+			int maxPaths = SolverScratch.maxPathsFor(budgetBytes);
+			if (tableFilename != null) {
+				File tableFile = new File(tableFilename);
+				try {
+					// La construction de la table respecte les limites de la resolution (null si elle est arretee)
+					SolveResult outcome = solve(root, parking -> {
+						try {
+							DistanceTable table = DistanceTable.open(tableFile, parking);
+							return table == null ? null : table.solveParking(parking);
+						}
+						catch (IOException exception) {
+							throw new UncheckedIOException(exception);
+						}
+					}, deadline, null, maxPaths);
+					solution = outcome._solution;
+					failure = outcome.stopMessage(timeoutMillis);
+				}
+				catch (UncheckedIOException exception) {
+					System.out.println("Error while reading table : " + exception.getCause().getMessage());
+					return;
+				}
 			}
-			//Sinon, on empile sur un stack les etapes menant de la racine a la solution (feuille)
-			else {
-				Stack<Parking> path = new Stack<Parking>();
-				while (solution != null) {
-					path.push(solution);
-					solution = solution.getParentParking(); //Remonte l'arbre
+			else if (cacheFilename != null) {
+				String solverEngine = engine; // Copies utilisables par la resolution en cas d'echec du cache
+				int solverThreads = threads;
+				try {
+					SolutionCache cache = new SolutionCache(new File(cacheFilename), CACHE_CAPACITY);
+					SolveResult outcome = cache.solveParking(root,
+							parking -> solve(parking, solverEngine, solverThreads, deadline, null, maxPaths));
+					cache.close();
+					solution = outcome._solution;
+					failure = outcome.stopMessage(timeoutMillis);
+					String cacheStats = String.format("Cache : %d solution(s) retrouvee(s), %d calculee(s)",
+							cache.hits(), cache.misses());
+					if (outputMode.equals("text")) renderer.line(cacheStats);
+					else System.err.println(cacheStats); // La sortie standard reste lisible par un programme
 				}
-				printSteps(path); //Affiche les déplacements menant a la solution
+				catch (IOException exception) {
+					System.out.println("Error while reading cache : " + exception.getMessage());
+					return;
+				}
+			}
+			else if (engine.equals("anytime") && root.getContext().fitsKey()) {
+				// Chaque solution amelioree est ecrite des qu'elle est trouvee, la meilleure ensuite. L'echeance et
+				// le budget sont ceux de solve: sans solution, une resolution arretee n'est pas une absence de solution
+				long start = System.nanoTime();
+				String improvementMode = outputMode;
+				AnytimeSolver.Listener listener = (found, moves, optimal) -> new Renderer()
+						.improvement(improvementMode, found, moves, optimal, System.nanoTime()-start).flush(System.out);
+				SolveResult outcome = solve(root, parking -> AnytimeSolver.solveParking(parking, 0, listener), deadline, null,
+						maxPaths);
+				solution = outcome._solution;
+				failure = outcome.stopMessage(timeoutMillis);
 			}
+			else {
+				SolveResult outcome = solve(root, engine, threads, deadline, null, maxPaths);
+				solution = outcome._solution;
+				failure = outcome.stopMessage(timeoutMillis);
+			}
+
+			// Affiche les déplacements menant a la solution, l'absence de solution ou l'arret de la resolution
+			if (failure != null && outputMode.equals("text")) renderer.line("Résolution interrompue : " + failure).flush(System.out);
+			else if (failure != null) {
+				if (outputMode.equals("moves")) System.err.println(failure); // Raison absente du resultat compact
+				renderer.error(outputMode, null, failure).flush(System.out);
+			}
+			else renderer.result(outputMode, null, root, solution, null).flush(System.out);
+			SearchStats.Search search = SearchStats.lastSearch();
+			if (search != null) printStats(search.summary(), outputMode);
+		}
+	}
+
+	private static void printStats(String summary, String outputMode) {
+		/*
+		 * Ecrit le resume summary des mesures de recherche, sur la sortie d'erreur si le resultat doit
+		 * rester lisible par un programme.
+		 */
+		if (outputMode.equals("text")) System.out.println(summary);
+		else System.err.println(summary);
+	}
+
+	static Parking solveWith(Parking root, String engine, int threads) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, calculee par
+		 * l'algorithme engine (bfs, astar, ida, anytime ou bidir) sur threads threads (parcours en largeur
+		 * uniquement).
+		 * La resolution progressive (anytime) retourne sa meilleure solution si elle est interrompue.
+		 * Si la cle des Parkings compte plusieurs mots, tous les algorithmes se ramenent a WideSolver.
+		 */
+		if (!root.getContext().fitsKey()) {
+			return WideSolver.solveParking(root);
+		}
+		else if (engine.equals("astar")) {
+			return AStarSolver.solveParking(root);
+		}
+		else if (engine.equals("anytime")) {
+			return AnytimeSolver.solveParking(root, 0, null);
+		}
+		else if (engine.equals("ida")) {
+			return IDAStarSolver.solveParking(root);
+		}
+		else if (engine.equals("bidir")) {
+			return BidirectionalSolver.solveParking(root);
+		}
+		else if (threads > 1) {
+			ParallelSolver solver = new ParallelSolver(threads);
+			Parking solution = solver.solveParking(root);
+			solver.shutdown();
+			return solution;
+		}
+		return solveParking(root);
+	}
+
+	static SolveResult solve(Parking root, String engine, int threads, long deadline, CancellationToken cancellation,
+			int maxPaths) {
+		/*
+		 * Resout le probleme du Parking ayant pour racine root comme solveWith, en s'arretant a l'echeance
+		 * deadline (System.nanoTime, 0: aucune), des que cancellation est annule ou le thread interrompu, ou
+		 * des que plus de maxPaths Parkings sont indexes. Les limites sont verifiees a chaque niveau et tous
+		 * les SolverScratch.STOP_CHECK Parkings developpes; la recherche IDA*, dont la memoire ne depend pas
+		 * du nombre de Parkings, n'indexe que la solution. Retourne la solution ou la raison de son absence.
+		 */
+		return solve(root, parking -> solveWith(parking, engine, threads), deadline, cancellation, maxPaths);
+	}
+
+	static SolveResult solve(Parking root, Function<Parking, Parking> solver, long deadline,
+			CancellationToken cancellation, int maxPaths) {
+		/*
+		 * Resout le probleme du Parking ayant pour racine root par solver, dans les limites du thread
+		 * (SolverScratch) fixees comme ci-dessus, puis retablies.
+		 */
+		SolverScratch scratch = SolverScratch._threadScratch.get();
+		long previousDeadline = scratch._deadline; // Limites du thread, retablies apres la resolution
+		CancellationToken previousCancellation = scratch._cancellation;
+		int previousMaxPaths = scratch._maxPaths;
+		scratch._deadline = deadline;
+		scratch._cancellation = cancellation;
+		scratch._maxPaths = maxPaths;
+		try {
+			scratch._stopReason = null;
+			Parking solution = solver.apply(root);
+			SolveResult.Status status = solution != null ? SolveResult.Status.SOLVED
+					: scratch._stopReason != null ? scratch._stopReason : SolveResult.Status.UNSOLVABLE;
+			return new SolveResult(status, solution, scratch.indexedCount());
+		}
+		finally {
+			scratch._deadline = previousDeadline;
+			scratch._cancellation = previousCancellation;
+			scratch._maxPaths = previousMaxPaths;
 		}
 	}
 
@@ -55,85 +352,62 @@ public class Escape {
 		 * Cette solution est sous la forme d'une feuille de l'arbre des deplacements possibles.
 		 * Si aucune solution n'est possible, renvoie null.
 		 */
-		ArrayList<Parking> prevParkings = new ArrayList<Parking>();
-		ArrayList<Parking> nextParkings = new ArrayList<Parking>();
-		ArrayList<Parking> newParkings = new ArrayList<Parking>();
-		prevParkings.add(root); //Premier niveau: racine
+		SolverScratch scratch = SolverScratch.acquire(root.getContext()); //Tampons du thread, remis a zero
+		scratch.rankStates(root); //Parkings generes retenus un bit par disposition si l'espace le permet
+		scratch.visit(root._key); //Premier Parking existant
+		root._index = scratch._paths.reset(root); //Racine de l'arbre des deplacements
+		scratch._level.add(root._key, root._index); //Premier niveau: racine
+		SearchStats.Search stats = SearchStats.begin("bfs"); // Mesures par niveau (null si desactivees)
 
 		//Si le Goal Car est déjà libre:
-		Parking alreadySolved = root.isSolved();
+		Parking alreadySolved = root.isSolved(scratch);
 		if (alreadySolved != null) {
+			if (stats != null) stats.end(true);
 			return alreadySolved;
 		}
 
-		// Sinon, tant qu'il existe des nouvelles combinaisons de position des voitures
-		while (!prevParkings.isEmpty()) {
-			nextParkings = new ArrayList<Parking>();
-			ListIterator<Parking> iter = prevParkings.listIterator();
-			Parking currentParking;
-
-			// On genere les noeuds du niveau suivant (nouveaux Parkings)
-			while (iter.hasNext()) {
-				currentParking = iter.next();
-				newParkings = currentParking.getNextParkings(); //Nouveaux Parkings possibles
+		// Chaque Parking d'un niveau est recopie dans currentParking pour etre developpe
+		Parking currentParking = new Parking(root.getContext(), root._carPositions.clone(), root._key);
 
-				// Un premier element nul signifie que la solution a ete trouvee
-				if (!newParkings.isEmpty() && newParkings.get(0) == null) {
-					return newParkings.get(1); // On retourne la solution
-				}
-				// Autrement, on conserve toutes les solutions pour aller plus loin
-				else {
-					nextParkings.addAll(newParkings);
+		// Sinon, tant qu'il existe des nouvelles combinaisons de position des voitures
+		while (scratch._level.size() > 0) {
+			if (scratch.checkLimits()) break; // Resolution arretee par une de ses limites (SolverScratch._stopReason)
+			Frontier level = scratch._level;
+			long generatedBefore = scratch._childrenGenerated, visitedBefore = scratch.visitedCount();
+			if (stats != null) stats.beginLevel();
+
+			// On genere les noeuds du niveau suivant (nouveaux Parkings), ajoutes a scratch._nextLevel
+			for (int rank=0; rank<level.size() && !scratch.stopped(); rank++) {
+				currentParking.load(level._keys[rank], level._indices[rank], scratch._paths);
+				Parking solution = currentParking.addNextParkings(scratch);
+
+				// Si la Goal Car est liberee, on retourne la solution
+				if (solution != null) {
+					if (stats != null) {
+						levelStats(stats, scratch, rank+1, generatedBefore, visitedBefore);
+						stats.end(true);
+					}
+					return solution;
 				}
 			}
-			prevParkings = nextParkings;
+			if (stats != null) levelStats(stats, scratch, level.size(), generatedBefore, visitedBefore);
+			scratch.swapLevels();
 		}
 
+		if (stats != null) stats.end(false);
 		return null; // Aucune solution trouvee
 
 	}
 
-	static void printSteps(Stack<Parking> path) {
+	private static void levelStats(SearchStats.Search stats, SolverScratch scratch, int expanded, long generatedBefore,
+			long visitedBefore) {
 		/*
-		 * Affiche sur l'output standard la résolution du problème, à partir du Stack contenant chaque etape menant a la
-		 * solution.
+		 * Retient dans stats les mesures du niveau en cours, dont expanded Parkings ont ete developpes,
+		 * scratch comptant generatedBefore deplacements et visitedBefore Parkings au debut du niveau.
 		 */
-		Parking prevStep = path.pop();
-		Move moveToStep;
-		Parking thisStep;
-		int thisMovedCar = -1;// Index de la voiture deplacee a cette etape-ci
-		int prevMovedCar = -1;// Index de la voiture deplacee a l'etape precedente
-
-		System.out.println("Situation initiale :");
-        prevStep.print();
-
-		System.out.println(String.format("\nUne façon de sortir du Parking en %d mouvements a été trouvée.", path.size()));
-
-		while (!path.isEmpty()) {
-			thisStep = path.pop();
-			moveToStep = thisStep.getParentMove();
-			thisMovedCar = moveToStep.getMovedCar();
-
-			// Si c'est une nouvelle voiture qui est deplacee, on l'affiche
-			if (prevMovedCar != thisMovedCar) {
-				if (thisMovedCar == 0) {
-					System.out.println(String.format("\nDéplacements voiture Goal :", thisMovedCar));
-				}
-				else {
-					System.out.println(String.format("\nDéplacements car %d :", thisMovedCar));
-				}
-
-				prevStep.printCoordinates(thisMovedCar);
-				prevMovedCar = thisMovedCar;
-			}
-			System.out.print(" -> ");
-			thisStep.printCoordinates(thisMovedCar);
-			prevStep = thisStep;
-		}
-		System.out.println("\n");
-
-		System.out.println("Situation finale :");
-        prevStep.print();
+		long generated = scratch._childrenGenerated - generatedBefore;
+		long visited = scratch.visitedCount();
+		stats.endLevel(scratch._level.size(), expanded, generated, generated - (visited - visitedBefore), visited);
 	}
 
 	public static void arrangeCoord(int[] coordXY) {
@@ -153,104 +427,18 @@ public class Escape {
 
 	static Parking parseFileToParking(String filename) {
 		/*
-		 * Parcourt le fichier filename et retourne le Parking qui y est decrit.
-		 * Si une erreur est rencontrée, retourne null.
+		 * Parcourt le fichier filename et retourne le Parking qui y est decrit (dessin ASCII, ou premier
+		 * Parking du format d'une ligne). Si une erreur est rencontrée, retourne null.
 		 */
-		String line; // Ligne en cours de lecture
-		String[] parsed; // Elements séparés de la ligne
-		int width, height; // Dimensions du parking
-		int exitX=-1, exitY=-1; // Coordonnées de la sortie
-		int carsCount; // Nombre de voitures
-
-		int aX = 0, aY = 1, bX = 2, bY = 3; // Index des coordonnées
-		int[][] carCoordinates = null; // Liste des coordonnees au format [backX, backY, frontX, frontY]
-
 		try {
-			File f = new File(filename);
-			FileReader filerd = new FileReader(f);
-			BufferedReader buffrd = new BufferedReader(filerd);
-
-			try {
-				// DIMENSIONS
-				line = buffrd.readLine();
-				parsed = line.split(" ");
-				width = Integer.parseInt(parsed[1]); // Largeur du Parking
-				height = Integer.parseInt(parsed[3]); // Hauteur du Parking
-                exitX=width;	//Sortie par défaut (au cas ou dessin mal fait)
-                exitY=2;
-
-				// DESSIN DU PARKING ET SORTIES
-				line = buffrd.readLine(); //Premiere ligne, retire char vides
-				parsed = line.split("\\+");
-				for (int i=1; i<=width; i++) { 		//Sortie en haut ?
-					if (!parsed[i].equals("---")) { //Pas de delimiteur
-						exitX = i-1;
-						exitY = -1;
-					}
-				}
-				for (int i = 0; i < height; i++) {	//Sortie sur cotes ?
-					line = buffrd.readLine().replaceAll("\\s", ""); // Ligne importante, retire char vides
-					if (!line.startsWith("|")) {
-						exitX = -1;
-						exitY = i;
-					}
-					else if (!line.endsWith("|")) {
-						exitX = width;
-						exitY = i;
-					}
-					if (i!=height-1) {
-						line = buffrd.readLine(); //Passe la ligne
-					}
-				}
-				line = buffrd.readLine(); //Dernière ligne, retire char vides
-				parsed = line.split("\\+");
-				for (int i=1; i<=width; ++i) {		//Sortie en bas ?
-					if (!parsed[i].equals("---")) { //Pas de delimiteur
-						exitX = i-1;
-						exitY = height;
-					}
-				}
-
-				// NOMBRE VOITURES GOAL (forcement 1)
-				line = buffrd.readLine(); //Passe ligne inutile
-				line = buffrd.readLine().replaceAll("\\s", ""); // Retire caractères vides
-				parsed = line.split(":");
-
-				carsCount = Integer.parseInt(parsed[1]);
-
-				// NOMBRE D'AUTRES VOITURES
-				line = buffrd.readLine().replaceAll("\\s", ""); // Retire caractères vides
-				parsed = line.split(":");
-				carsCount += Integer.parseInt(parsed[1]);
-
-				line = buffrd.readLine(); // passe une ligne inutile
-
-				// COORDONNEES DES VOITURES
-				carCoordinates = new int[carsCount][4];
-
-				for (int numberLine = 0; numberLine < carsCount; numberLine++) {
-					line = buffrd.readLine().split(":")[1]; // Ligne contenant les coordonnees
-					parsed = line.replaceAll("[\\)\\(\\s\\]\\[]", "").split(","); // Separe les coordonnees
-
-					carCoordinates[numberLine][aX] = Integer.parseInt(parsed[aX]);
-					carCoordinates[numberLine][aY] = Integer.parseInt(parsed[aY]);
-					carCoordinates[numberLine][bX] = Integer.parseInt(parsed[bX]);
-					carCoordinates[numberLine][bY] = Integer.parseInt(parsed[bY]);
-
-					arrangeCoord(carCoordinates[numberLine]); // Rearrange les coordonnees (arriere puis avant)
-				}
-
-				buffrd.close();
-				filerd.close();
-				return new Parking(width, height, exitX, exitY, carCoordinates); // Fichier correct: OK
-			}
-			catch (IOException exception) {
-				System.out.println("Error while reading : " + exception.getMessage());
-			}
+			return PuzzleParser.parseFile(new File(filename)); // Fichier correct: OK
 		}
 		catch (FileNotFoundException exception) {
 			System.out.println(String.format("File %s not found", filename));
 		}
+		catch (IOException exception) {
+			System.out.println("Error while reading : " + exception.getMessage());
+		}
 
 		return null; // Erreur -> Parking non genere
 	}
@@ -0,0 +1,48 @@
+/**
+ * Niveau du parcours en largeur sous forme de tableaux primitifs: la cle et l'index (dans le PathStore
+ * de la resolution) de chaque Parking du niveau, sans objet Parking. Deux niveaux sont utilises a tour
+ * de role (niveau en cours et niveau suivant) et conservent leurs tableaux d'un niveau a l'autre
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //agrandissement des tableaux
+
+public class Frontier {
+	long[] _keys = new long[1 << 10]; //Cle de chaque Parking du niveau
+	int[] _indices = new int[1 << 10]; //Index de chaque Parking dans le PathStore
+	int _size; //Nombre de Parkings du niveau
+
+	public void add(long key, int index) {
+		/*
+		 * Ajoute au niveau le Parking de cle key et d'index index.
+		 */
+		if (_size == _keys.length) {
+			_keys = Arrays.copyOf(_keys, _size << 1);
+			_indices = Arrays.copyOf(_indices, _size << 1);
+		}
+		_keys[_size] = key;
+		_indices[_size++] = index;
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de Parkings du niveau.
+		 */
+		return _size;
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre de Parkings que le niveau peut contenir sans etre agrandi.
+		 */
+		return _keys.length;
+	}
+
+	public void clear() {
+		/*
+		 * Vide le niveau en conservant ses tableaux.
+		 */
+		_size = 0;
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Recherche IDA* de la meilleure solution: recherches en profondeur successives, chacune limitee aux
+ * Parkings dont le nombre de deplacements deja effectues plus l'estimation Parking.estimateMovesToExit
+ * ne depasse pas un seuil, augmente d'une iteration a l'autre. Un seul Parking est modifie sur place
+ * (deplacement puis retour de la voiture) et les Parkings deja atteints sont retenus dans une table de
+ * transposition de taille fixe: la memoire utilisee ne depend pas de la taille de l'espace des Parkings.
+ * L'absence de solution est prouvee par un parcours en largeur range dans les tableaux de cette table
+ * (checkExit): au-dela de ce qu'elle peut contenir, seules les limites de la resolution l'arretent.
+ * Pour l'instrumentation, chaque iteration forme un niveau (sa frontiere etant son seuil)
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //agrandissement des piles de deplacements
+
+public class IDAStarSolver {
+	static final int DEFAULT_TABLE_MEGABYTES = 64; //Taille par defaut de la table de transposition
+	static final int FOUND = -1; //Resultat d'une recherche ayant atteint la solution
+	static final int EXHAUSTED = Integer.MAX_VALUE; //Resultat d'une recherche sans Parking au-dela du seuil
+	static final int EXIT_UNREACHABLE = 0, EXIT_REACHABLE = 1, TOO_MANY_STATES = 2; //Resultats de checkExit
+
+	static volatile int _tableMegabytes = DEFAULT_TABLE_MEGABYTES; //Taille de la table de transposition de chaque thread
+
+	final SolverContext _context; //Probleme a resoudre
+	final SolverScratch _scratch; //Tampons du thread
+	final TranspositionTable _table; //Parkings deja atteints pendant l'iteration en cours
+	final Parking _cursor; //Parking modifie sur place au fil de la recherche
+	final long[] _carUnits; //Increment de la cle pour une position de chaque voiture
+	int[][] _children = new int[0][]; //Voiture et deplacement de chaque enfant, par profondeur
+	int[] _pathCars = new int[64], _pathMoves = new int[64]; //Deplacements menant de la racine a _cursor
+	int _solutionDepth; //Nombre de deplacements menant au Parking dont la Goal Car est libre
+	long _expanded, _generated, _duplicates; //Mesures de l'iteration en cours
+	boolean _reachedZero; //La cle 0 fait partie des dispositions atteintes par checkExit (retenue a part)
+
+	IDAStarSolver(Parking root, SolverScratch scratch) {
+		_context = root.getContext();
+		_scratch = scratch;
+		long tableBytes = (long) _tableMegabytes << 20;
+		if (scratch._transpositions == null
+				|| scratch._transpositions.capacity() != TranspositionTable.capacityFor(tableBytes)) {
+			scratch._transpositions = null; //L'ancienne table peut etre liberee avant l'allocation
+			scratch._transpositions = new TranspositionTable(tableBytes);
+		}
+		_table = scratch._transpositions;
+		_cursor = new Parking(_context, root._carPositions.clone(), root._key);
+		_carUnits = new long[_context._carsCount];
+		for (int carIndex=0; carIndex<_carUnits.length; carIndex++) _carUnits[carIndex] = 1L << _context._carShifts[carIndex];
+	}
+
+	static Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe (ou si la resolution
+		 * est abandonnee). La solution compte les deplacements comme AStarSolver: elle est optimale.
+		 */
+		SolverScratch scratch = SolverScratch.acquire(root.getContext());
+		return new IDAStarSolver(root, scratch).solve(root);
+	}
+
+	private Parking solve(Parking root) {
+		/*
+		 * Augmente le seuil jusqu'a trouver la solution, puis la reconstruit a partir de root.
+		 */
+		PathStore paths = _scratch._paths;
+		root._index = paths.reset(root);
+		SearchStats.Search stats = SearchStats.begin("ida"); //Mesures par iteration (null si desactivees)
+		int bound = root.estimateMovesToExit(); //Seuil de la premiere iteration
+		long visited = 0; //Parkings developpes depuis le debut de la resolution
+		long checkedStates = 0; //Dispositions que la derniere verification de la sortie n'a pas suffi a parcourir
+		boolean exitChecked = false; //true si la sortie est atteignable, ou ne peut etre verifiee dans la table
+
+		while (bound != EXHAUSTED && bound != Parking.UNREACHABLE) {
+			_table.nextIteration();
+			_expanded = _generated = _duplicates = 0;
+			if (stats != null) stats.beginLevel();
+			int result = search(0, bound, -1, 0);
+			visited += _expanded;
+			if (stats != null) stats.endLevel(bound, _expanded, _generated, _duplicates, visited);
+
+			if (result == FOUND) {
+				//Le chemin trouve est indexe, puis complete jusqu'a la sortie par isSolved
+				int index = root._index;
+				for (int depth=0; depth<_solutionDepth; depth++) {
+					index = paths.add(index, _pathCars[depth], _pathMoves[depth]);
+					_cursor._carPositions[_pathCars[depth]] += _pathMoves[depth];
+					_cursor._key += _pathMoves[depth]*_carUnits[_pathCars[depth]];
+				}
+				_cursor._index = index;
+				if (stats != null) stats.end(true);
+				return _cursor.isSolved(_scratch);
+			}
+			if (_scratch._stopReason != null) break; //Resolution arretee par une de ses limites
+			//Sans solution, seuls les cycles font encore augmenter le seuil: la sortie est verifiee a part, des
+			//que la recherche a developpe deux fois plus de Parkings que la verification precedente n'en a parcouru
+			if (!exitChecked && visited >= 2*checkedStates) {
+				int maxStates = _table.capacity() / 2; //Taux de remplissage de LongHashSet
+				checkedStates = Math.min(maxStates, Math.max(visited, 1));
+				int exit = checkExit(root, (int) checkedStates);
+				if (exit == EXIT_UNREACHABLE || _scratch._stopReason != null) break;
+				exitChecked = exit == EXIT_REACHABLE || checkedStates == maxStates;
+			}
+			bound = result; //Plus petit total depassant le seuil
+		}
+
+		if (stats != null) stats.end(false);
+		return null; // Aucune solution trouvee
+	}
+
+	private int checkExit(Parking root, int maxStates) {
+		/*
+		 * Parcourt en largeur les dispositions atteignables a partir de root et retourne EXIT_REACHABLE si
+		 * l'une d'elles libere la Goal Car, EXIT_UNREACHABLE si aucune, ou TOO_MANY_STATES si elles sont plus
+		 * de maxStates (ou si la resolution est arretee par une de ses limites). Un Parking atteint a
+		 * nouveau par un cycle depasse le seuil d'autant plus que le cycle est long: sans cette preuve, les
+		 * iterations d'un probleme sans solution ne s'arretent jamais.
+		 * Le parcours n'utilise que les tableaux de la table de transposition, videe ensuite: ses cles
+		 * forment l'ensemble des dispositions atteintes (0: case vide, comme LongHashSet), ses iterations
+		 * et profondeurs la file des cles (mots forts et faibles). maxStates doit valoir au plus la moitie
+		 * du nombre de cases.
+		 */
+		long[] reached = _table._keys;
+		int[] queueHigh = _table._iterations, queueLow = _table._depths;
+		Arrays.fill(reached, 0L);
+		_reachedZero = false;
+		int count = 0;
+		int exit = EXIT_UNREACHABLE;
+		reach(reached, root._key);
+		queueHigh[count] = (int) (root._key >>> 32);
+		queueLow[count++] = (int) root._key;
+
+		Parking cursor = new Parking(_context, root._carPositions.clone(), root._key);
+		search:
+		for (int head=0; head<count; head++) {
+			if (_scratch.stopped()) { exit = TOO_MANY_STATES; break; } //Resolution arretee par une de ses limites
+			cursor._key = ((long) queueHigh[head] << 32) | (queueLow[head] & 0xFFFFFFFFL);
+			_context.unpackPositions(cursor._key, cursor._carPositions);
+			int childrenCount = cursor.expand(_scratch);
+			if (_scratch._exitSpotsBlocked == 0 || _scratch._goalFreedBy >= 0) { exit = EXIT_REACHABLE; break; }
+			for (int child=0; child<childrenCount; child++) {
+				long key = _scratch._childKeys[child];
+				if (!reach(reached, key)) continue;
+				if (count == maxStates) { exit = TOO_MANY_STATES; break search; }
+				queueHigh[count] = (int) (key >>> 32);
+				queueLow[count++] = (int) key;
+			}
+		}
+		_table.clear();
+		return exit;
+	}
+
+	private boolean reach(long[] reached, long key) {
+		/*
+		 * Ajoute key a l'ensemble reached des dispositions atteintes par checkExit (adressage ouvert, 0:
+		 * case vide). Retourne true si elle est nouvelle.
+		 */
+		if (key == 0) {
+			boolean added = !_reachedZero;
+			_reachedZero = true;
+			return added;
+		}
+		int mask = reached.length - 1;
+		int slot = LongHashSet.hash(key) & mask;
+		while (reached[slot] != 0) {
+			if (reached[slot] == key) return false;
+			slot = (slot+1) & mask;
+		}
+		reached[slot] = key;
+		return true;
+	}
+
+	private int search(int depth, int bound, int lastCar, int lastMove) {
+		/*
+		 * Developpe en profondeur _cursor, atteint en depth deplacements (le dernier deplacant lastCar de
+		 * lastMove positions), sans depasser le seuil bound. Retourne FOUND si la Goal Car est liberee
+		 * (le chemin est alors dans _pathCars et _pathMoves), sinon le plus petit total depassant bound
+		 * (EXHAUSTED si aucun). _cursor est rendu inchange.
+		 */
+		int estimate = _cursor.estimateMovesToExit();
+		if (estimate == Parking.UNREACHABLE) return EXHAUSTED;
+		if (depth + estimate > bound) return depth + estimate;
+		if (_table.visit(_cursor._key, depth)) { //Deja atteint au plus tot: son developpement est en cours ou fait
+			_duplicates++;
+			return EXHAUSTED;
+		}
+		_expanded++;
+		if (_scratch.stopped()) return EXHAUSTED; //Resolution arretee par une de ses limites
+
+		int childrenCount = _cursor.expand(_scratch, lastCar); //Deplacements canoniques
+		if (_scratch._exitSpotsBlocked == 0) { //Goal Car libre: l'estimation est alors exacte
+			_solutionDepth = depth;
+			return FOUND;
+		}
+		_generated += childrenCount;
+
+		//Les enfants sont copies: les tampons de _scratch servent aux profondeurs suivantes
+		if (depth == _children.length) _children = Arrays.copyOf(_children, Math.max(16, 2*depth));
+		if (_children[depth] == null || _children[depth].length < 2*childrenCount) _children[depth] = new int[2*_scratch._childCars.length];
+		int[] children = _children[depth];
+		for (int child=0; child<childrenCount; child++) {
+			children[2*child] = _scratch._childCars[child];
+			children[2*child+1] = _scratch._childMoves[child];
+		}
+		if (depth == _pathCars.length) {
+			_pathCars = Arrays.copyOf(_pathCars, 2*depth);
+			_pathMoves = Arrays.copyOf(_pathMoves, 2*depth);
+		}
+
+		int next = EXHAUSTED;
+		for (int child=0; child<childrenCount; child++) {
+			int carIndex = children[2*child], move = children[2*child+1];
+			//Deplacer a nouveau la derniere voiture deplacee: retour en arriere, ou glissement en deux fois
+			if (carIndex == lastCar && (_context._slideMoves || (move > 0) != (lastMove > 0))) continue;
+
+			_cursor._carPositions[carIndex] += move;
+			_cursor._key += move*_carUnits[carIndex];
+			_pathCars[depth] = carIndex;
+			_pathMoves[depth] = move;
+			int result = search(depth+1, bound, carIndex, move);
+			_cursor._carPositions[carIndex] -= move;
+			_cursor._key -= move*_carUnits[carIndex];
+
+			if (result == FOUND) return FOUND;
+			next = Math.min(next, result);
+		}
+		return next;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Ensemble de cles long a adressage ouvert (sondage lineaire), sans objets intermediaires
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //remplissage de la table
+
+public class LongHashSet {
+	static final float MAX_LOAD = 0.5f; //Taux de remplissage maximal avant agrandissement
+
+	long[] _keys; //Cases de la table (0 = case vide)
+	boolean _hasZero; //La cle 0 ne peut pas etre stockee dans la table, on la retient a part
+	int _mask; //Taille de la table - 1 (taille puissance de 2)
+	int _size; //Nombre de cles presentes
+	int _resizeAt; //Nombre de cles a partir duquel la table est agrandie
+
+	public LongHashSet() {
+		this(1 << 10);
+	}
+
+	public LongHashSet(int expectedSize) {
+		/*
+		 * Construit un ensemble vide pouvant contenir expectedSize cles sans etre agrandi.
+		 */
+		int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	public boolean add(long key) {
+		/*
+		 * Ajoute key a l'ensemble. Retourne true si la cle est nouvelle, false si elle etait deja presente.
+		 */
+		if (key == 0) {
+			if (_hasZero) return false;
+			_hasZero = true;
+			_size += 1;
+			return true;
+		}
+		int slot = hash(key) & _mask;
+		long current;
+		while ((current = _keys[slot]) != 0) { //Parcourt les cases occupees jusqu'a une case vide
+			if (current == key) return false;
+			slot = (slot + 1) & _mask;
+		}
+		_keys[slot] = key;
+		if (++_size >= _resizeAt) rehash(_keys.length << 1);
+		return true;
+	}
+
+	public boolean contains(long key) {
+		/*
+		 * Retourne true si key appartient a l'ensemble, false sinon.
+		 */
+		if (key == 0) return _hasZero;
+		int slot = hash(key) & _mask;
+		long current;
+		while ((current = _keys[slot]) != 0) {
+			if (current == key) return true;
+			slot = (slot + 1) & _mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de cles presentes.
+		 */
+		return _size;
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre de cases de la table.
+		 */
+		return _keys.length;
+	}
+
+	public void clear() {
+		/*
+		 * Retire toutes les cles en conservant la table (reutilisable sans reallocation).
+		 */
+		Arrays.fill(_keys, 0);
+		_hasZero = false;
+		_size = 0;
+	}
+
+	static int hash(long key) {
+		/*
+		 * Melange les bits de la cle (les positions empaquetees varient surtout dans les bits faibles).
+		 */
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void allocate(int capacity) {
+		/*
+		 * Alloue une table vide de capacity cases.
+		 */
+		_keys = new long[capacity];
+		_mask = capacity - 1;
+		_resizeAt = (int) (capacity * MAX_LOAD);
+	}
+
+	private void rehash(int capacity) {
+		/*
+		 * Agrandit la table a capacity cases et y replace toutes les cles.
+		 */
+		long[] oldKeys = _keys;
+		allocate(capacity);
+		for (long key : oldKeys) {
+			if (key != 0) {
+				int slot = hash(key) & _mask;
+				while (_keys[slot] != 0) slot = (slot + 1) & _mask;
+				_keys[slot] = key;
+			}
+		}
+	}
+}
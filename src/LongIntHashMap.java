@@ -0,0 +1,118 @@
+/**
+ * Table associant un entier a des cles long, a adressage ouvert (sondage lineaire), sans objets
+ * intermediaires
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //remplissage de la table
+
+public class LongIntHashMap {
+	long[] _keys; //Cles de la table (0 = case vide)
+	int[] _values; //Valeur associee a chaque cle
+	boolean _hasZero; //La cle 0 ne peut pas etre stockee dans la table, on la retient a part
+	int _zeroValue; //Valeur associee a la cle 0
+	int _mask; //Taille de la table - 1 (taille puissance de 2)
+	int _size; //Nombre de cles presentes
+	int _resizeAt; //Nombre de cles a partir duquel la table est agrandie
+
+	public LongIntHashMap() {
+		this(1 << 10);
+	}
+
+	public LongIntHashMap(int expectedSize) {
+		/*
+		 * Construit une table vide pouvant contenir expectedSize cles sans etre agrandie.
+		 */
+		int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LongHashSet.MAX_LOAD)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	public int get(long key, int missing) {
+		/*
+		 * Retourne la valeur associee a key, ou missing si la cle est absente.
+		 */
+		if (key == 0) return _hasZero ? _zeroValue : missing;
+		int slot = LongHashSet.hash(key) & _mask;
+		long current;
+		while ((current = _keys[slot]) != 0) {
+			if (current == key) return _values[slot];
+			slot = (slot + 1) & _mask;
+		}
+		return missing;
+	}
+
+	public void put(long key, int value) {
+		/*
+		 * Associe value a key, en remplacant la valeur precedente s'il y en avait une.
+		 */
+		if (key == 0) {
+			if (!_hasZero) _size += 1;
+			_hasZero = true;
+			_zeroValue = value;
+			return;
+		}
+		int slot = LongHashSet.hash(key) & _mask;
+		long current;
+		while ((current = _keys[slot]) != 0) {
+			if (current == key) {
+				_values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & _mask;
+		}
+		_keys[slot] = key;
+		_values[slot] = value;
+		if (++_size >= _resizeAt) rehash(_keys.length << 1);
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de cles presentes.
+		 */
+		return _size;
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre de cases de la table.
+		 */
+		return _keys.length;
+	}
+
+	public void clear() {
+		/*
+		 * Retire toutes les cles en conservant la table (reutilisable sans reallocation).
+		 */
+		Arrays.fill(_keys, 0);
+		_hasZero = false;
+		_size = 0;
+	}
+
+	private void allocate(int capacity) {
+		/*
+		 * Alloue une table vide de capacity cases.
+		 */
+		_keys = new long[capacity];
+		_values = new int[capacity];
+		_mask = capacity - 1;
+		_resizeAt = (int) (capacity * LongHashSet.MAX_LOAD);
+	}
+
+	private void rehash(int capacity) {
+		/*
+		 * Agrandit la table a capacity cases et y replace toutes les cles.
+		 */
+		long[] oldKeys = _keys;
+		int[] oldValues = _values;
+		allocate(capacity);
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = LongHashSet.hash(oldKeys[i]) & _mask;
+				while (_keys[slot] != 0) slot = (slot + 1) & _mask;
+				_keys[slot] = oldKeys[i];
+				_values[slot] = oldValues[i];
+			}
+		}
+	}
+}
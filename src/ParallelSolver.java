@@ -0,0 +1,236 @@
+/**
+ * Parcours en largeur niveau par niveau dont chaque niveau est developpe en parallele: le niveau est
+ * decoupe en tranches developpees par un ForkJoinPool, et les Parkings generes sont dedoublonnes dans
+ * une table partagee. Le resultat est identique a celui de Escape.solveParking
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.ArrayList; //tableau de taille variable
+import java.util.Arrays; //agrandissement des tableaux de rangs
+import java.util.concurrent.ForkJoinPool; //threads de travail
+import java.util.concurrent.ForkJoinTask; //lancement des tranches
+import java.util.concurrent.RecursiveAction; //tranche d'un niveau
+import java.util.concurrent.atomic.AtomicInteger; //rang de la meilleure solution trouvee
+
+public class ParallelSolver {
+	static final int MIN_CHUNK = 256; //Nombre minimal de Parkings par tranche
+	static final int CHUNKS_PER_THREAD = 8; //Tranches par thread, pour equilibrer la charge
+
+	final int _threads; //Nombre de threads de travail
+	final ForkJoinPool _pool; //Threads developpant les tranches
+
+	public ParallelSolver(int threads) {
+		/*
+		 * Construit un solveur utilisant threads threads de travail.
+		 */
+		_threads = threads;
+		_pool = new ForkJoinPool(threads);
+	}
+
+	public void shutdown() {
+		/*
+		 * Arrete les threads de travail.
+		 */
+		_pool.shutdown();
+	}
+
+	public Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe.
+		 * Les niveaux sont parcourus dans le meme ordre que par Escape.solveParking: un Parking genere
+		 * par plusieurs parents est attribue a celui de plus petit rang dans son niveau, et la solution
+		 * retenue est celle du parent de plus petit rang. La solution est donc la meme.
+		 */
+		SolverContext context = root.getContext();
+		SolverScratch scratch = SolverScratch.acquire(context); //L'arbre des deplacements est indexe par ce thread
+		PathStore paths = scratch._paths;
+		root._index = paths.reset(root);
+		SearchStats.Search stats = SearchStats.begin("bfs-parallel"); //Mesures par niveau (null si desactivees)
+		long visited = 1; //Parkings generes
+
+		//Si le Goal Car est deja libre:
+		Parking alreadySolved = root.isSolved(scratch);
+		if (alreadySolved != null) {
+			if (stats != null) stats.end(true);
+			return alreadySolved;
+		}
+
+		ConcurrentStateTable allParkings = new ConcurrentStateTable(_threads);
+		allParkings.claim(root._key, ConcurrentStateTable.owner(0, 0)); //Premier Parking existant
+		ArrayList<Parking> prevParkings = new ArrayList<Parking>();
+		prevParkings.add(root); //Premier niveau: racine
+
+		// Tant qu'il existe des nouvelles combinaisons de position des voitures
+		for (int level=1; !prevParkings.isEmpty() && !scratch.checkLimits(); level++) {
+			int chunkSize = Math.max(MIN_CHUNK, -Math.floorDiv(-prevParkings.size(), _threads*CHUNKS_PER_THREAD));
+			int chunksCount = -Math.floorDiv(-prevParkings.size(), chunkSize);
+			AtomicInteger solutionRank = new AtomicInteger(Integer.MAX_VALUE);
+
+			LevelChunk[] chunks = new LevelChunk[chunksCount];
+			for (int i=0; i<chunksCount; i++) {
+				int from = i*chunkSize;
+				chunks[i] = new LevelChunk(prevParkings, from, Math.min(from+chunkSize, prevParkings.size()),
+						level, allParkings, solutionRank);
+			}
+
+			// On genere en parallele les noeuds du niveau suivant
+			if (stats != null) stats.beginLevel();
+			runAll(chunks);
+
+			// Si une solution a ete trouvee, on retourne celle du parent de plus petit rang
+			if (solutionRank.get() != Integer.MAX_VALUE) {
+				for (LevelChunk chunk : chunks) {
+					if (chunk._solutionRank == solutionRank.get()) {
+						if (stats != null) {
+							levelStats(stats, prevParkings.size(), chunks, visited);
+							stats.end(true);
+						}
+						return prevParkings.get(chunk._solutionRank).solutionThrough(chunk._solutionCar,
+								chunk._solutionMove, paths);
+					}
+				}
+			}
+
+			// Sinon, chaque tranche ne garde que les Parkings dont elle est restee proprietaire
+			for (LevelChunk chunk : chunks) chunk.reinitialize();
+			for (LevelChunk chunk : chunks) chunk._filtering = true;
+			runAll(chunks);
+
+			// Les Parkings conserves sont indexes dans l'ordre du parcours sequentiel
+			int nextSize = 0;
+			for (LevelChunk chunk : chunks) nextSize += chunk._children.size();
+			ArrayList<Parking> nextParkings = new ArrayList<Parking>(nextSize);
+			for (LevelChunk chunk : chunks) {
+				for (int i=0; i<chunk._children.size(); i++) {
+					Parking child = chunk._children.get(i);
+					child._index = paths.add(prevParkings.get(chunk._parentRanks[i])._index, chunk._childCars[i],
+							chunk._childMoves[i]);
+					nextParkings.add(child);
+				}
+			}
+			if (stats != null) levelStats(stats, prevParkings.size(), chunks, visited);
+			visited += nextSize;
+			prevParkings = nextParkings;
+		}
+
+		if (stats != null) stats.end(false);
+		return null; // Aucune solution trouvee
+	}
+
+	private static void levelStats(SearchStats.Search stats, int frontier, LevelChunk[] chunks, long visitedBefore) {
+		/*
+		 * Retient dans stats les mesures du niveau de frontier Parkings developpe par chunks, visitedBefore
+		 * Parkings ayant ete generes avant ce niveau.
+		 */
+		long expanded = 0, generated = 0, added = 0;
+		for (LevelChunk chunk : chunks) {
+			expanded += chunk._expanded;
+			generated += chunk._generated;
+			added += chunk._children.size();
+		}
+		stats.endLevel(frontier, expanded, generated, generated - added, visitedBefore + added);
+	}
+
+	private void runAll(LevelChunk[] chunks) {
+		/*
+		 * Execute toutes les tranches sur les threads de travail et attend leur fin.
+		 */
+		_pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				ForkJoinTask.invokeAll(chunks);
+			}
+		});
+	}
+
+	static final class LevelChunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L; //Tache jamais serialisee (RecursiveAction est Serializable)
+		final ArrayList<Parking> _parkings; //Niveau en cours de parcours
+		final int _from, _to; //Rangs [_from, _to[ des Parkings developpes par cette tranche
+		final int _level; //Niveau des Parkings generes
+		final ConcurrentStateTable _allParkings; //Parkings deja generes, tous threads confondus
+		final AtomicInteger _bestSolutionRank; //Plus petit rang d'un parent liberant la Goal Car
+
+		boolean _filtering; //false pendant le developpement, true pendant le tri des proprietaires
+		ArrayList<Parking> _children = new ArrayList<Parking>(); //Parkings generes par la tranche
+		int[] _parentRanks = new int[MIN_CHUNK]; //Rang du parent de chaque Parking genere
+		int[] _childCars = new int[MIN_CHUNK]; //Voiture deplacee pour obtenir chaque Parking genere
+		int[] _childMoves = new int[MIN_CHUNK]; //Deplacement de cette voiture
+		int _solutionRank = Integer.MAX_VALUE; //Rang du parent liberant la Goal Car
+		int _solutionCar, _solutionMove; //Deplacement de ce parent liberant la Goal Car
+		int _expanded, _generated; //Parkings developpes et deplacements generes (instrumentation)
+
+		LevelChunk(ArrayList<Parking> parkings, int from, int to, int level, ConcurrentStateTable allParkings,
+				AtomicInteger bestSolutionRank) {
+			_parkings = parkings;
+			_from = from;
+			_to = to;
+			_level = level;
+			_allParkings = allParkings;
+			_bestSolutionRank = bestSolutionRank;
+		}
+
+		protected void compute() {
+			if (_filtering) keepOwnedChildren();
+			else expandRange();
+		}
+
+		private void expandRange() {
+			/*
+			 * Developpe les Parkings de la tranche, en s'arretant des qu'un parent de rang inferieur a
+			 * libere la Goal Car (les suivants ne seraient pas developpes par le parcours sequentiel).
+			 */
+			SolverScratch scratch = SolverScratch.acquireForExpansion(_parkings.get(_from).getContext());
+
+			for (int rank=_from; rank<_to && rank<_bestSolutionRank.get(); rank++) {
+				Parking parent = _parkings.get(rank);
+				int childrenCount = parent.expand(scratch, parent._movedCar);
+				long owner = ConcurrentStateTable.owner(_level, rank);
+				_expanded++;
+
+				for (int child=0; child<childrenCount; child++) {
+					if (child==scratch._goalFreedBy) { //Solution: la tranche s'arrete sur ce parent
+						_solutionCar = scratch._childCars[child];
+						_solutionMove = scratch._childMoves[child];
+						_solutionRank = rank;
+						_generated += child; //Deplacements examines avant la solution
+						_bestSolutionRank.accumulateAndGet(rank, Math::min);
+						return;
+					}
+					if (_allParkings.claim(scratch._childKeys[child], owner)) {
+						if (_children.size() == _parentRanks.length) {
+							_parentRanks = Arrays.copyOf(_parentRanks, _parentRanks.length << 1);
+							_childCars = Arrays.copyOf(_childCars, _parentRanks.length);
+							_childMoves = Arrays.copyOf(_childMoves, _parentRanks.length);
+						}
+						_parentRanks[_children.size()] = rank;
+						_childCars[_children.size()] = scratch._childCars[child];
+						_childMoves[_children.size()] = scratch._childMoves[child];
+						_children.add(parent.newChild(scratch._childCars[child], scratch._childMoves[child],
+								scratch._childKeys[child]));
+					}
+				}
+				_generated += childrenCount;
+			}
+		}
+
+		private void keepOwnedChildren() {
+			/*
+			 * Retire de la tranche les Parkings revendiques ensuite par un parent de rang inferieur, en
+			 * conservant l'ordre de generation des autres.
+			 */
+			int kept = 0;
+			for (int i=0; i<_children.size(); i++) {
+				Parking child = _children.get(i);
+				if (_allParkings.ownerOf(child._key) == ConcurrentStateTable.owner(_level, _parentRanks[i])) {
+					_parentRanks[kept] = _parentRanks[i];
+					_childCars[kept] = _childCars[i];
+					_childMoves[kept] = _childMoves[i];
+					_children.set(kept++, child);
+				}
+			}
+			_children.subList(kept, _children.size()).clear();
+		}
+	}
+}
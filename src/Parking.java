@@ -4,43 +4,35 @@
  * @author Allan Muranovic
  */
 
-import java.util.Arrays; //methodes hashSet et equals sur les tableaux
-import java.util.ArrayList; //tableau de taille variable
-import java.util.HashSet; //hash table
-
+import java.util.Arrays; //comparaison des cles de plusieurs mots
 
 public class Parking {
 	//MEMBRES STATIQUES
-	static boolean[][] _spotsUsed;	//Matrice du parking: true si case occupee, false sinon
-	static HashSet<Parking> _allParkings; //Hash Set des parkings deja generes
-
-	static int _width, _height, _exitX, _exitY; //Largeur, Hauteur, Colonne puis Ligne de la sortie
-	static int _exitSpotsBlocked; //Compteur des spots bloques entre la Goal Car et la sortie
-	static boolean _exitInFront; //Retient si la sortie est a l'avant ou a l'arriere de la Goal Car
-
-	static int _carsCount; //Nombre de voitures
-	static boolean[] _carOrientations; //true si voiture d'index i est horizontale, false si verticale
-	static int[] _carRanges; //Index de ligne (si horizontale) ou colonne (si verticale) des voitures
-	static int[] _carSizes; //Tailles des voitures
+	static final int UNREACHABLE = Integer.MAX_VALUE; //Estimation d'un Parking dont la sortie ne peut etre atteinte
 
 	//MEMBRES PROPRES A CHAQUE INSTANCE
+	final SolverContext _context; //Definition du probleme, commune a tous les noeuds de l'arbre
 	int[] _carPositions; //Position de l'arriere des voitures dans leurs rangees (definit le parking)
+	long _key; //Positions des voitures empaquetees sur _bitsPerCar bits chacune (premier mot de la cle)
+	long[] _keyWords; //Tous les mots de la cle si elle en compte plusieurs (null sinon)
+	int _index; //Index du Parking dans le PathStore de la resolution (-1 si non indexe)
+	int _movedCar; //Voiture deplacee pour obtenir ce Parking a partir de son parent (-1 pour une racine)
 	Move _parentMove; //Deplacement (arete) reliant cette situation a la precedent (noeud parent)
 
 
-	public Parking isSolved() {
+	public Parking isSolved(SolverScratch scratch) {
 		/*
-		 * Si le Parking est deja resolu (on suppose l'appel sur le Parking initial, la racine),
-		 * retourne le dernier Parking sous forme d'une feuille de l'arbre des deplacements.
+		 * Si le Parking est deja resolu (la Goal Car est libre), retourne le dernier Parking sous forme
+		 * d'une feuille de l'arbre des deplacements, reconstruite a partir de scratch._paths.
 		 * Sinon, retourne la valeur null.
 		 */
 
-		setMatrix(); //Permet les verifications necessaires de disponibilite des positions
-		Parking result = null;
+		setOccupancy(scratch); //Permet les verifications necessaires de disponibilite des positions
 		//Si la voiture devient libre sans deplacement, on genere la branche de la solution
-		if (goalCarBecomesFree(null)) result = goalCarToExit();
-		clearMatrix(); //Nettoie la matrice de facon efficace
-		return result;
+		if (goalCarBecomesFree(0, 0, scratch)) {
+			return scratch._paths.replay(goalCarToExit(_carPositions[0], _index, scratch._paths));
+		}
+		return null;
 	}
 
 	public String isImpossible() {
@@ -49,23 +41,25 @@ public class Parking {
 		 * decrivant le probleme. Sinon, retourne un string vide.
 		 */
 
+		//Les deplacements ne peuvent pas etre codes sur deux octets
+		if (!PathStore.fits(_context)) { return "le parking permet trop de deplacements differents pour etre encode"; }
 		//La goal car n'est pas alignee avec la sortie, ou la sortie n'est pas sur un cote
-		if (_carOrientations[0]) {
-			if (_carRanges[0]!= _exitY) { return "la sortie et le Goal car ne sont pas sur la meme ligne"; }
-			if (_exitX!=-1 && _exitX!=_width) { return "la sortie ne se situe pas sur un cote du parking"; }
+		if (_context._carOrientations[0]) {
+			if (_context._carRanges[0]!= _context._exitY) { return "la sortie et le Goal car ne sont pas sur la meme ligne"; }
+			if (_context._exitX!=-1 && _context._exitX!=_context._width) { return "la sortie ne se situe pas sur un cote du parking"; }
 		}
 		else {
-			if (_carRanges[0]!= _exitX) { return "la sortie et le Goal car ne sont pas sur la meme colonne"; }
-			if (_exitY!=-1 && _exitY!=_height) { return "la sortie ne se situe pas sur un cote du parking"; }
+			if (_context._carRanges[0]!= _context._exitX) { return "la sortie et le Goal car ne sont pas sur la meme colonne"; }
+			if (_context._exitY!=-1 && _context._exitY!=_context._height) { return "la sortie ne se situe pas sur un cote du parking"; }
 		}
 		//Il y a une voiture de meme orientation entre la sortie et la goal car
 		boolean carBlocks = false;
 		int carIndex=1;
-		while (!carBlocks && carIndex<_carsCount) {
+		while (!carBlocks && carIndex<_context._carsCount) {
 			//Voiture de meme orientation et de meme rangee que Goal Car
-			if (_carOrientations[carIndex]==_carOrientations[0] && _carRanges[carIndex]==_carRanges[0]) {
+			if (_context._carOrientations[carIndex]==_context._carOrientations[0] && _context._carRanges[carIndex]==_context._carRanges[0]) {
 				//Voiture entre Goal Car et sortie
-				if (_exitInFront) carBlocks = _carPositions[carIndex]>_carPositions[0];
+				if (_context._exitInFront) carBlocks = _carPositions[carIndex]>_carPositions[0];
 				else carBlocks = _carPositions[carIndex]<_carPositions[0];
 			}
 			carIndex+=1;
@@ -73,179 +67,296 @@ public class Parking {
 		if (carBlocks) {
 			return String.format("la sortie est bloquee par la voiture %d", carIndex-1);
 		}
+		//Un mur se trouve entre la goal car et la sortie
+		int exit = _carPositions[0]*_context._words;
+		for (int word=0; word<_context._words; word++) {
+			if ((_context._walls[word] & _context._exitMasks[exit+word]) != 0) return "la sortie est bloquee par un mur";
+		}
 		return ""; //Parking possible -> pas d'erreur
 	}
 
-	public ArrayList<Parking> getNextParkings() {
+	public Parking addNextParkings(SolverScratch scratch) {
 		/*
-		 * Retourne la liste des Parkings nouveaux (menant a une nouvelle disposition des voitures)
-		 * pouvant etre obtenus a partir de this en deplacant une seule voiture d'une seule position.
-		 * Si dans l'un deux, la Goal Car est libre, retourne une liste contenant le flag null suivi
-		 * du dernier Parking de la solution (comme feuille de l'arbre).
-		 * Si aucun Parking n'est nouveau, retourne une liste vide.
+		 * Ajoute au niveau suivant scratch._nextLevel (cle et index dans scratch._paths) chaque Parking
+		 * nouveau (menant a une nouvelle disposition des voitures) pouvant etre obtenu a partir de this en
+		 * deplacant une seule voiture. Si l'un d'eux libere la Goal Car, les suivants sont ignores et le
+		 * dernier Parking de la solution est retourne (comme feuille de l'arbre). Sinon, retourne null.
+		 * Aucun objet n'est alloue en dehors de la solution.
 		 */
+		int childrenCount = expand(scratch, _movedCar); //Deplacements canoniques possibles a partir de this
+		Frontier nextLevel = scratch._nextLevel;
+		StateRanking ranking = scratch._ranking; //Rang de chaque enfant deduit de celui de this (null: hachage des cles)
+		long rank = ranking != null ? ranking.rank(_key) : 0;
+
+		for (int child=0; child<childrenCount; child++) {
+			long childKey = scratch._childKeys[child];
+
+			//Si ce deplacement libere la Goal Car, les suivants sont inutiles
+			if (child==scratch._goalFreedBy) {
+				scratch._childrenGenerated += child; //Deplacements examines avant la solution
+				return solutionThrough(scratch._childCars[child], scratch._childMoves[child], scratch._paths);
+			}
+			//Sinon, si cette disposition de Parking est nouvelle (retour de add)
+			boolean added = ranking != null
+					? scratch._visitedBits.add(ranking.childRank(rank, scratch._childCars[child], scratch._childMoves[child]))
+					: scratch._allParkings.add(childKey);
+			if (added) {
+				nextLevel.add(childKey, scratch._paths.add(_index, scratch._childCars[child], scratch._childMoves[child]));
+			}
+		}
+		scratch._childrenGenerated += childrenCount;
+		return null;
+	}
 
-		setMatrix(); //Initialise la matrice permettant de verifier les places disponibles
-		ArrayList<Parking> nextParkings = new ArrayList<Parking>(); //Parkings suivants
-		Parking newParking; //Parking suivant courant
-
-		//On essaie de deplacer chaque voiture vers l'avant et vers l'arriere
-		for (int carIndex=0; carIndex < _carsCount; carIndex++) {
+	void load(long key, int index, PathStore paths) {
+		/*
+		 * Remplace la disposition de this par celle du Parking de cle key et d'index index dans paths
+		 * (le parcours en largeur developpe ainsi chaque Parking de ses niveaux sans le construire).
+		 */
+		_key = key;
+		_context.unpackPositions(key, _carPositions);
+		_index = index;
+		_movedCar = paths.movedCar(index);
+	}
 
-			//Essaie d'AVANCER (de 1) la voiture (si la position devant est libre)
-			if (spotIsFree(getFwdSpot(carIndex, 1))) {
+	public int expand(SolverScratch scratch) {
+		/*
+		 * Ecrit dans les tampons de scratch (_childKeys, _childCars, _childMoves) les deplacements (d'une
+		 * position, ou glissements selon le contexte) possibles a partir de this, sans verifier s'ils
+		 * menent a des Parkings nouveaux, et retourne leur nombre. L'index du premier d'entre eux liberant
+		 * la Goal Car est retenu dans scratch._goalFreedBy (-1 si aucun). Aucun objet n'est alloue.
+		 */
+		return expand(scratch, -1);
+	}
 
-				int[] newCarPositions = _carPositions.clone();	//Copie des positions actuelles
-				newCarPositions[carIndex] += 1; 				//Voiture carIndex avance d'une position
-				newParking = new Parking(newCarPositions);	//Parking des nouvelles positions
-				new Move(this, newParking, carIndex);		//Mouvement menant a ce parking
+	public int expand(SolverScratch scratch, int lastCar) {
+		/*
+		 * Comme expand(scratch), mais en omettant les deplacements des voitures qui ne peuvent pas suivre
+		 * un deplacement de lastCar dans un chemin canonique (SolverContext._followingCars): le Parking
+		 * obtenu l'est aussi, en autant de deplacements, par un chemin que la recherche parcourt avant.
+		 * Cette reduction suppose un parcours des chemins dans l'ordre de generation (parcours en largeur
+		 * ou en profondeur), this etant atteint par son plus petit chemin; lastCar = -1 la desactive.
+		 */
 
-				//Si en liberant la position arriere on libere la Goal Car
-				if (goalCarBecomesFree(getBwdSpot(carIndex, 0))) {
-					nextParkings.clear(); //Plus besoin des autres Parkings
-					nextParkings.add(null);	//Flag pour solution trouvee
-					nextParkings.add(newParking.goalCarToExit()); //Dernier noeud de la solution
-					return nextParkings;
-				}
-				//Sinon, si cette disposition de Parking est nouvelle (retour de add)
-				if (_allParkings.add(newParking)) {
-					nextParkings.add(newParking);
+		setOccupancy(scratch); //Initialise le masque permettant de verifier les places disponibles
+		int childrenCount = 0;
+		scratch._goalFreedBy = -1;
+
+		//On essaie de deplacer chaque voiture vers l'avant et vers l'arriere, d'une position ou, si les
+		//deplacements sont des glissements, de toutes les positions libres atteignables. Les voitures
+		//sans influence sur la sortie de la Goal Car restent immobiles (SolverContext._movingCars)
+		int[] movingCars = _context._movingCars;
+		long followingCars = lastCar<0 ? -1L : _context._followingCars[lastCar]; //Voitures deplacables apres lastCar
+		for (int i=0; i < movingCars.length; i++) {
+			int carIndex = movingCars[i];
+			if ((followingCars & (1L << carIndex)) == 0) continue; //Deplacement commutant avec le precedent
+			long keyWord = keyWord(carIndex); //Mot de la cle contenant la position de la voiture
+			long carUnit = 1L << _context._carShifts[carIndex]; //Increment de ce mot pour une position de la voiture
+			int[] laneCells = _context._laneCells[carIndex]; //Cases de la rangee de la voiture
+			int back = _carPositions[carIndex], front = back+_context._carSizes[carIndex];
+
+			//Essaie d'AVANCER la voiture (tant que la position devant est libre)
+			for (int move=1; front+move<laneCells.length && spotIsFree(laneCells[front+move], scratch); move++) {
+				scratch.addChild(childrenCount, keyWord + move*carUnit, carIndex, move);
+				//Si en liberant les positions arriere on libere la Goal Car
+				if (scratch._goalFreedBy<0 && goalCarBecomesFree(carIndex, move, scratch)) {
+					scratch._goalFreedBy = childrenCount;
 				}
+				childrenCount += 1;
+				if (!_context._slideMoves) break;
 			}
 
-			//Essaie de RECULER (de 1) la voiture (si la position derriere est libre)
-			if (spotIsFree(getBwdSpot(carIndex, 1))) {
-				int[] newCarPositions = _carPositions.clone();	//Copie des positions actuelles
-				newCarPositions[carIndex] -= 1; 				//Voiture carIndex avance d'une position
-				newParking = new Parking(newCarPositions);	//Parking des nouvelles positions
-				new Move(this, newParking, carIndex);		//Mouvement menant a ce parking
-
-				//Si en liberant la position avant on libere la Goal Car
-				if (goalCarBecomesFree(getFwdSpot(carIndex, 0))) {
-					nextParkings.clear(); //Plus besoin des autres Parkings
-					nextParkings.add(null); //Flag pour solution trouvee
-					nextParkings.add(newParking.goalCarToExit()); //Dernier noeud de la solution
-					return nextParkings;
-				}
-				//Sinon, si cette disposition de Parking est nouvelle (retour de add)
-				if (_allParkings.add(newParking)) {
-					nextParkings.add(newParking);
+			//Essaie de RECULER la voiture (tant que la position derriere est libre)
+			for (int move=1; back-move>=0 && spotIsFree(laneCells[back-move], scratch); move++) {
+				scratch.addChild(childrenCount, keyWord - move*carUnit, carIndex, -move);
+				//Si en liberant les positions avant on libere la Goal Car
+				if (scratch._goalFreedBy<0 && goalCarBecomesFree(carIndex, -move, scratch)) {
+					scratch._goalFreedBy = childrenCount;
 				}
+				childrenCount += 1;
+				if (!_context._slideMoves) break;
 			}
 		}
-		clearMatrix(); //Nettoie la matrice de facon efficace
-		return nextParkings;
+		return childrenCount;
 	}
 
-
-	private boolean goalCarBecomesFree(int[] freedSpot) {
+	Parking newChild(int carIndex, int move, long key) {
 		/*
-		 * Retourne true si en liberant la position freedSpot, on libere le Goal Car, false sinon.
+		 * Construit le Parking enfant obtenu en deplacant la voiture carIndex de move positions.
+		 * key est la cle deja calculee de ce nouveau Parking (childKey), qui n'est pas encore indexe.
 		 */
-		if (freedSpot==null)
-			return _exitSpotsBlocked==0; //Aucune position liberee, Goal Car deja libre
-		else
-			return spotBlocksExit(freedSpot) && _exitSpotsBlocked==1; //freedSpot = seule position bloquante
+		int[] newCarPositions = _carPositions.clone();	//Copie des positions actuelles
+		newCarPositions[carIndex] += move;				//Voiture carIndex se deplace
+		if (_keyWords == null) {
+			Parking child = new Parking(_context, newCarPositions, key);
+			child._movedCar = carIndex;
+			return child;
+		}
+		//Cle de plusieurs mots: seul le mot de la voiture deplacee change
+		long[] childWords = _keyWords.clone();
+		childWords[_context._carWords[carIndex]] = key;
+		Parking child = new Parking(_context, newCarPositions, childWords[0]);
+		child._keyWords = childWords;
+		child._movedCar = carIndex;
+		return child;
 	}
 
-	private Parking goalCarToExit() {
+	long keyWord(int carIndex) {
 		/*
-		 * Prend pour acquis que le Goal Car est libre et genere la suite de la branche partant du parking
-		 * actuel et menant a la solution, puis retourne la feuille obtenue.
+		 * Retourne le mot de la cle contenant la position de la voiture carIndex (la cle entiere si elle
+		 * tient dans un mot).
 		 */
+		return _keyWords == null ? _key : _keyWords[_context._carWords[carIndex]];
+	}
 
-		int[] newCarPositions=_carPositions.clone(); //Nouvelles positions des voitures
-		int maxGoalPosition; //Position max. de la Goal Car (position a la sortie)
-		int move; //Deplacements de la Goal Car
+	long childKey(int carIndex, int move) {
+		/*
+		 * Retourne la cle (le mot de la cle contenant la position de carIndex, si elle en compte plusieurs)
+		 * du Parking obtenu en deplacant la voiture carIndex de move positions.
+		 */
+		return keyWord(carIndex) + move*(1L << _context._carShifts[carIndex]);
+	}
 
-		Parking prevParking = this; //Parking precedent
-		Parking nextParking;		//Parking suivant
+	Parking solutionThrough(int carIndex, int move, PathStore paths) {
+		/*
+		 * Indexe dans paths l'enfant obtenu par un deplacement liberant la Goal Car, puis la suite de la
+		 * branche menant la Goal Car a la sortie, et retourne la feuille de la solution reconstruite.
+		 */
+		int index = paths.add(_index, carIndex, move);
+		int goalPosition = _carPositions[0] + (carIndex==0 ? move : 0); //Position de la Goal Car dans l'enfant
+		return paths.replay(goalCarToExit(goalPosition, index, paths));
+	}
 
-		if (_exitInFront) {	//Sortie vers l'avant
-			if (_carOrientations[0]) maxGoalPosition = _exitX-_carSizes[0]-1;//Selon largeur
-			else maxGoalPosition = _exitY-_carSizes[0]-1;//Selon hauteur
-			move = 1; //Avancer
-		}
-		else {				//Sortie vers l'arriere
-			maxGoalPosition=0;
-			move = -1; //Reculer
+	private boolean goalCarBecomesFree(int carIndex, int move, SolverScratch scratch) {
+		/*
+		 * Retourne true si en deplacant la voiture carIndex de move positions (0: aucun deplacement),
+		 * on libere le Goal Car, false sinon.
+		 */
+		if (move==0)
+			return scratch._exitSpotsBlocked==0; //Aucune position liberee, Goal Car deja libre
+		if (carIndex==0)
+			return false; //La Goal Car ne se bloque pas elle-meme
+		//Plus aucune position bloquante une fois la voiture retiree de sa position et placee sur la nouvelle
+		long[] carMasks = _context._carMasks[carIndex];
+		int from = _carPositions[carIndex]*_context._words, to = (_carPositions[carIndex]+move)*_context._words;
+		int exit = _carPositions[0]*_context._words;
+		for (int word=0; word<_context._words; word++) {
+			long occupied = scratch._occupancy[word] ^ carMasks[from+word] ^ carMasks[to+word];
+			if ((occupied & _context._exitMasks[exit+word]) != 0) return false;
 		}
+		return true;
+	}
+
+	private int goalCarToExit(int goalPosition, int index, PathStore paths) {
+		/*
+		 * Prend pour acquis que le Goal Car, en position goalPosition dans le Parking d'index index, est
+		 * libre et indexe dans paths la suite de la branche menant a la solution, puis retourne l'index
+		 * de la feuille obtenue.
+		 */
+
+		int maxGoalPosition = _context.exitGoalPosition(); //Position max. de la Goal Car (position a la sortie)
+		int move = _context._exitInFront ? 1 : -1; //Deplacements de la Goal Car (avancer ou reculer)
+		if (_context._slideMoves) move = maxGoalPosition-goalPosition; //Un seul glissement jusqu'a la sortie
+
 		//Tant que Goal Car n'est pas devant sortie
-		while (newCarPositions[0]!=maxGoalPosition) {
-			newCarPositions = prevParking._carPositions.clone(); //Copie des positions actuelles
-			newCarPositions[0] += move; //Voiture Goal se deplace d'une position
-			nextParking = new Parking(newCarPositions);//Parking suivant
-			new Move(prevParking, nextParking, 0);//Mouvement reliant les Parkings
-			prevParking = nextParking;
+		while (goalPosition!=maxGoalPosition) {
+			goalPosition += move; //Voiture Goal se deplace (d'une position, ou glisse jusqu'a la sortie)
+			index = paths.add(index, 0, move); //Mouvement reliant les Parkings
 		}
 
-		return prevParking;
+		return index;
 	}
 
-	private int[] getBwdSpot(int carIndex, int offset) {
+	public int exitSpotsBlocked(SolverScratch scratch) {
 		/*
-		 * Retourne la position a une distance de offset de l'arriere de la voiture carIndex.
+		 * Retourne le nombre de cases occupees entre la Goal Car et la sortie (le masque d'occupation de
+		 * scratch est celui de this au retour).
 		 */
-		int[] spot = new int[2];
-		if (_carOrientations[carIndex]) {	//Voiture horizontale
-			spot[0] = _carPositions[carIndex]-offset;	//Sa composante X (col) - offset
-			spot[1] = _carRanges[carIndex];				//Sa composante Y (ligne) est fixe
-		}
-		else {								//Voiture verticale
-			spot[0] = _carRanges[carIndex];				//Sa composante X (col) est fixe
-			spot[1] = _carPositions[carIndex]-offset;	//Sa composante Y (ligne) - offset
-		}
-		return spot;
+		setOccupancy(scratch);
+		return scratch._exitSpotsBlocked;
 	}
 
-	private int[] getFwdSpot(int carIndex, int offset) {
+	public int estimateMovesToExit() {
 		/*
-		 * Retourne la position a une distance de offset de l'avant de la voiture carIndex.
+		 * Retourne un minorant du nombre de deplacements menant la Goal Car a la sortie, ou UNREACHABLE
+		 * si une voiture bloquante ne pourra jamais quitter la rangee de la Goal Car.
+		 * Le minorant est la somme de:
+		 * - la distance entre la Goal Car et la sortie (1 glissement si elle n'y est pas deja);
+		 * - pour chaque voiture bloquant la sortie, la plus courte distance a parcourir pour quitter la
+		 *   rangee de la Goal Car, vers l'avant ou vers l'arriere (1 glissement), sans traverser de mur;
+		 * - pour la voiture bloquante la plus coincee, le nombre de voitures occupant son chemin de
+		 *   degagement le plus libre (ces voitures devront bouger au moins une fois).
+		 * Un deplacement ne fait varier ce minorant que d'au plus 1: l'heuristique est coherente.
 		 */
-		return getBwdSpot(carIndex, -offset-_carSizes[carIndex]);
+		int goalRange = _context._carRanges[0]; //Rangee de la Goal Car, a degager
+		int goalFront = _carPositions[0]+_context._carSizes[0]; //Position de l'avant de la Goal Car
+		int estimate = Math.abs(_context.exitGoalPosition()-_carPositions[0]);
+		if (_context._slideMoves) estimate = Math.min(estimate, 1);
+		int mostObstacles = 0; //Obstacles de la voiture bloquante la plus coincee
+
+		for (int carIndex=1; carIndex<_context._carsCount; carIndex++) {
+			//Seules les voitures perpendiculaires a la Goal Car peuvent la bloquer
+			if (_context._carOrientations[carIndex]==_context._carOrientations[0]) continue;
+			int crossing = _context._carRanges[carIndex]; //Position a laquelle elle croise la rangee
+			boolean blocks = _context._exitInFront ? crossing>goalFront : crossing<_carPositions[0];
+			int back = _carPositions[carIndex], size = _context._carSizes[carIndex];
+			if (!blocks || back>goalRange || back+size<goalRange) continue;
+
+			int laneLength = _context._carOrientations[carIndex] ? _context._width : _context._height;
+			int bwdTarget = goalRange-size-1; //Position degageant la rangee par l'arriere
+			int fwdTarget = goalRange+1; //Position degageant la rangee par l'avant
+			int shortest = UNREACHABLE, fewestObstacles = UNREACHABLE;
+			//Un mur sur le chemin de degagement interdit ce sens
+			if (bwdTarget>=0 && !_context.wallBetween(carIndex, bwdTarget, back-1)) {
+				shortest = back-bwdTarget;
+				fewestObstacles = countCarsOnLane(carIndex, bwdTarget, back-1);
+			}
+			if (fwdTarget+size<laneLength && !_context.wallBetween(carIndex, back+size+1, fwdTarget+size)) {
+				shortest = Math.min(shortest, fwdTarget-back);
+				fewestObstacles = Math.min(fewestObstacles, countCarsOnLane(carIndex, back+size+1, fwdTarget+size));
+			}
+			if (shortest==UNREACHABLE) return UNREACHABLE; //Voiture trop grande pour se degager
+			estimate += _context._slideMoves ? 1 : shortest;
+			mostObstacles = Math.max(mostObstacles, fewestObstacles);
+		}
+		return estimate + mostObstacles;
 	}
 
-	private int[] getUsedSpot(int carIndex, int offset) {
+	private int countCarsOnLane(int carIndex, int from, int to) {
 		/*
-		 * Retourne la offset-eme position occupee par la voiture carIndex.
+		 * Retourne le nombre de voitures (autres que carIndex) occupant au moins une des positions
+		 * from a to (incluses) de la rangee de la voiture carIndex.
 		 */
-		return getBwdSpot(carIndex, -offset);
+		int count = 0;
+		int range = _context._carRanges[carIndex];
+		for (int other=0; other<_context._carsCount; other++) {
+			if (other==carIndex) continue;
+			int otherBack = _carPositions[other], otherFront = otherBack+_context._carSizes[other];
+			if (_context._carOrientations[other]==_context._carOrientations[carIndex]) {
+				//Voiture parallele: meme rangee et intervalles qui se chevauchent
+				if (_context._carRanges[other]==range && otherBack<=to && otherFront>=from) count += 1;
+			}
+			else {
+				//Voiture perpendiculaire: croise la rangee entre from et to
+				int crossing = _context._carRanges[other];
+				if (crossing>=from && crossing<=to && otherBack<=range && otherFront>=range) count += 1;
+			}
+		}
+		return count;
 	}
 
-	public boolean spotIsFree(int[] spot) {
+	public boolean spotIsFree(int cell, SolverScratch scratch) {
 		/*
-		 * Retourne true si les coordonnees de la position spot sont correctes et non occupees, false sinon.
+		 * Retourne true si la case cell (bit y*largeur+x du plateau) n'est pas occupee, false sinon.
 		 */
-		return spot[0]>=0 && spot[1]>=0 && spot[0]<_width && spot[1]<_height && !_spotsUsed[spot[1]][spot[0]];
+		return (scratch._occupancy[cell >>> 6] & (1L << cell)) == 0;
 	}
 
-	public boolean spotBlocksExit(int[] spot) {
+	public boolean spotBlocksExit(int cell) {
 		/*
-		 * Retourne true si les coordonnees de la position spot sont situees entre le Goal Car et la sortie,
-		 * false sinon.
+		 * Retourne true si la case cell est situee entre le Goal Car et la sortie, false sinon.
 		 */
-		boolean result = false;
-		if (_carOrientations[0]) {	//Goal Car Horizontale
-			if (spot[1]==_exitY) { 		//Spot sur meme ligne
-				if (_exitInFront) {			//Sortie devant
-					result = spot[0]>_carPositions[0]+_carSizes[0];//Spot devant Goal Car
-				}
-				else {						//Sortie derriere
-					result = spot[0]<_carPositions[0];//Spot derriere Goal Car
-				}
-			}
-		}
-		else {						//Goal Car Verticale
-			if (spot[0]==_exitX) {		//Spot Sur meme colonne
-				if (_exitInFront) {			//Sortie devant
-					result = spot[1]>_carPositions[0]+_carSizes[0];//Spot devant Goal Car
-				}
-				else {						//Sortie derriere
-					result = spot[1]<_carPositions[0];//Spot derriere Goal Car
-				}
-			}
-		}
-		return result;
+		return (_context._exitMasks[_carPositions[0]*_context._words + (cell >>> 6)] & (1L << cell)) != 0;
 	}
 
 
@@ -256,7 +367,8 @@ public class Parking {
 		 */
 		if (o instanceof Parking) { //Si l'objet est bien un Parking
 			Parking other = (Parking) o;	//Cast
-			return Arrays.equals(_carPositions, other._carPositions); //Array.equals compare valeurs
+			if (_context.fitsKey()) return _key == other._key; //La cle d'un mot definit entierement les positions
+			return Arrays.equals(keyWords(), other.keyWords()); //Sinon, tous ses mots sont compares
 		}
 		return false;
 	}
@@ -266,35 +378,35 @@ public class Parking {
 		 * Redefinit la methode hashCode pour permettre le hashing de l'objet Parking.
 		 * Les donnees utilisees pour identifier un Parking sont les positions de ses voitures.
 		 */
-		return Arrays.hashCode(_carPositions); //Array.hashCode se base sur contenu du tableau
+		if (_context.fitsKey()) return LongHashSet.hash(_key); //Meme melange que l'ensemble des Parkings generes
+		return Arrays.hashCode(keyWords());
 	}
 
-	private void setMatrix() {
+	private long[] keyWords() {
 		/*
-		 * Ecrit true dans les cases de la matrice correspondant a des positions occuppees du Parking.
-		 * Calcule le nombre de voitures se situant entre le Goal Car et la sortie.
+		 * Retourne tous les mots de la cle de this, empaquetes a partir des positions s'ils ne sont pas
+		 * retenus (Parking construit a partir de son premier mot seulement).
 		 */
-		for (int i=0; i<_carsCount; i++) {
-			for (int offset=0; offset<=_carSizes[i]; offset++) {
-				int[] spot = getUsedSpot(i, offset);
-				_spotsUsed[spot[1]][spot[0]] = true; //Occupe les places
-				if (spotBlocksExit(spot)) _exitSpotsBlocked+=1;
-			}
-		}
+		return _keyWords != null ? _keyWords : _context.packPositions(_carPositions, new long[_context._keyWords]);
 	}
 
-	private void clearMatrix() {
+	private void setOccupancy(SolverScratch scratch) {
 		/*
-		 * Ecrit false dans les cases de la matrice correspondant a des positions occuppees du Parking.
-		 * Assigne 0 au compteur de voitures se situant entre le Goal Car et la sortie.
+		 * Ecrit dans le masque d'occupation de scratch les cases occupees par les murs et les voitures du
+		 * Parking. Calcule le nombre de cases occupees entre le Goal Car et la sortie.
 		 */
-		for (int i=0; i<_carsCount; i++) {
-			for (int offset=0; offset<=_carSizes[i]; offset++) {
-				int[] spot = getUsedSpot(i, offset);
-				_spotsUsed[spot[1]][spot[0]] = false; //Libere les places
-			}
+		int words = _context._words;
+		long[] occupancy = scratch._occupancy;
+		for (int word=0; word<words; word++) occupancy[word] = _context._walls[word];
+		for (int i=0; i<_context._carsCount; i++) {
+			int from = _carPositions[i]*words;
+			for (int word=0; word<words; word++) occupancy[word] |= _context._carMasks[i][from+word]; //Occupe les places
 		}
-		_exitSpotsBlocked=0;
+		int blocked = 0;
+		for (int word=0; word<words; word++) {
+			blocked += Long.bitCount(occupancy[word] & _context._exitMasks[_carPositions[0]*words+word]);
+		}
+		scratch._exitSpotsBlocked = blocked;
 	}
 
 	public Parking getParentParking() {
@@ -325,120 +437,56 @@ public class Parking {
 		_parentMove = parentMove;
 	}
 
-	public void printCoordinates(int carIndex) {
+	public SolverContext getContext() {
 		/*
-		 * Imprime les coordonnees de la voiture carIndex.
+		 * Retourne la definition du probleme auquel appartient ce Parking.
 		 */
-		int[] back = getBwdSpot(carIndex, 0);
-		int[] front = getFwdSpot(carIndex, 0);
-		System.out.print(String.format("[(%d,%d), (%d,%d)]", back[1], back[0], front[1], front[0]));
+		return _context;
 	}
 
-	public void print() {
+	//CONSTRUCTEURS DE NOEUD
+	public Parking(SolverContext context, int[] carPositions) {
 		/*
-		 * Imprime l'état du Parking.
+		 * Construit un noeud de l'arbre des Parkings, sans initialiser l'arete le reliant au parent.
 		 */
-		//Noms voitures a afficher
-		String[][] carNames = new String[_height][_width]; //Matrice des noms (par position)
-		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
-			for (int offset=0; offset<=_carSizes[carIndex]; offset++) {
-				int[] spot = getUsedSpot(carIndex, offset);
-				if (carIndex==0) {
-					carNames[spot[1]][spot[0]] = " G "; //Voiture GOAL
-				}
-				else {
-					String name = String.format(" c%d", carIndex); //Nom voiture
-					carNames[spot[1]][spot[0]] = name.substring(name.length()-3);
-				}
-			}
-		}
-		//Ligne superieure
-		for (int i=0; i<_width; i++) {
-			if (_exitY==-1 && i==_exitX) System.out.print("+   "); //Sortie
-			else System.out.print("+---"); //Mur
-		}
-		System.out.print("+\n");
-
-		//Interieur du dessin
-		String lineDelim = new String(new char[_width]).replace("\0", "+   ") + "+";
-		for (int i=0; i<_height; i++) {
-
-			//Noms des voitures
-			if (_exitY==i && _exitX==-1) System.out.print(" ");//Sortie
-			else System.out.print("|"); //Mur
-
-			System.out.print(String.join(" ", carNames[i]).replace("null",  "   "));
-
-			if (_exitY==i && _exitX==_width) System.out.print(" \n");//Sortie
-			else System.out.print("|\n"); //Mur
-
-			//Separateur
-			if (i!=_height-1) System.out.println(lineDelim);
-		}
-
-		for (int i=0; i<_width; i++) {
-			if (_exitY==_height && i==_exitX) System.out.print("+   "); //Sortie
-			else System.out.print("+---"); //Mur
-		}
-		System.out.print("+\n");
+		this(context, carPositions, context.packPositions(carPositions));
+		if (!context.fitsKey()) _keyWords = context.packPositions(carPositions, new long[context._keyWords]);
 	}
 
-	//CONSTRUCTEUR DE NOEUD
-	public Parking(int[] carPositions) {
+	public Parking(SolverContext context, int[] carPositions, long key) {
 		/*
-		 * Construit un noeud de l'arbre des Parkings, sans initialiser l'arete le reliant au parent.
+		 * Construit un noeud de l'arbre des Parkings dont la cle empaquetee key est deja connue.
 		 */
+		_context = context;
 		_carPositions = carPositions;
+		_key = key;
+		_index = -1; //Sera attribue a l'ajout du Parking dans le PathStore
+		_movedCar = -1; //Sera attribue a la creation du Parking par newChild
 		_parentMove = null; //Sera attribue a la creation de l'objet Move correspondant
 	}
 
 	//CONSTRUCTEUR INITIAL (RACINE)
 	public Parking(int width, int height, int exitX, int exitY, int[][] carCoordinates) {
 		/*
-		 * Construit la racine de l'arbre des Parkings, et initialise ses attributs statiques.
+		 * Construit la racine de l'arbre des Parkings, ainsi que la definition du probleme qu'elle partage
+		 * avec tous ses descendants. Les coordonnees sont au format [backY, backX, frontY, frontX].
 		 */
+		this(new SolverContext(width, height, exitX, exitY, carCoordinates), carCoordinates);
+	}
 
-		_width = width; //Largeur et hauteur
-		_height = height;
-		_exitX = exitX; //Coordonnees de la sortie (adjacente mais hors du parking)
-		_exitY = exitY;
-		_carsCount = carCoordinates.length; //Nb. de voitures
-		_parentMove = null; //Ne sera pas modifie pour racine
-
-		_spotsUsed = new boolean[height][width];//Initialisee avec false
-		_carOrientations = new boolean[_carsCount];
-		_carRanges = new int[_carsCount];
-		_carSizes = new int[_carsCount];
-		_carPositions = new int[_carsCount];
-
-		//Initialise tableaux statiques et tableau des positions
-		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
-			int[] coords = carCoordinates[carIndex]; //Coordonnees au format [backY, backX, frontY, frontX]
-
-			if (coords[0]==coords[2]) {	//backY==frontY donc Voiture...
-				_carOrientations[carIndex] = true;		//Horizontale
-				_carRanges[carIndex] = coords[0];		//Appartient a ligne backY
-				_carPositions[carIndex] = coords[1];	//Sur la position backX (a partir de la gauche)
-				_carSizes[carIndex] = coords[3] - coords[1]; //De taille frontX-backX
-			}
-			else {						//Voiture...
-				_carOrientations[carIndex] = false;		//Verticale
-				_carRanges[carIndex] = coords[1];		//Appartient a colonne backX
-				_carPositions[carIndex] = coords[0];	//Sur la position backY (a partir d'en haut)
-				_carSizes[carIndex] = coords[2] - coords[0]; //De taille frontY - backY
-			}
-		}
-
-		//Position de la sortie vis a vis du Goal Car
-		if (_carOrientations[0]) {	//Si le Goal car est horizontal
-			_exitInFront = exitX!=-1; //La sortie est devant si elle n'est pas en debut de ligne
-		}
-		else {						//Si le Goal car est vertical
-			_exitInFront = exitY!=-1; //La sortie est devant si elle n'est pas en haut de colonne
-		}
+	public Parking(int width, int height, int exitX, int exitY, int[][] carCoordinates, int[] wallCells) {
+		/*
+		 * Comme le constructeur precedent, pour un plateau comportant des murs aux cases wallCells
+		 * (y*largeur+x).
+		 */
+		this(new SolverContext(width, height, exitX, exitY, carCoordinates, wallCells), carCoordinates);
+	}
 
-		_allParkings = new HashSet<Parking>();
-		_allParkings.add(this); //Premier Parking existant
+	private Parking(SolverContext context, int[][] carCoordinates) {
+		/*
+		 * Construit la racine du probleme context a partir des coordonnees des voitures.
+		 */
+		this(context, context.carPositions(carCoordinates));
 	}
 
 }
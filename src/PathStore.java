@@ -0,0 +1,142 @@
+/**
+ * Arbre des deplacements retenu sous forme de tableaux primitifs: chaque Parking atteint recoit un
+ * index, auquel sont associes l'index de son parent et le deplacement (code sur deux octets) qui y mene.
+ * Le chemin d'une solution est reconstruit en rejouant ces deplacements depuis la racine
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //agrandissement des tableaux
+
+public class PathStore {
+	static final int NO_PARENT = -1; //Parent de la racine
+	static final int MAX_CODES = 1 << Short.SIZE; //Nombre de deplacements distincts codables sur deux octets
+
+	Parking _root; //Racine de l'arbre (index 0)
+	int _maxDistance; //Distance maximale d'un deplacement (1, ou longueur de rangee - 1 si glissements)
+	int[] _parents = new int[1 << 10]; //Index du parent de chaque Parking
+	short[] _moves = new short[1 << 10]; //Code du deplacement menant de ce parent au Parking
+	int _size; //Nombre de Parkings indexes
+
+	public int reset(Parking root) {
+		/*
+		 * Vide l'arbre et y place root, dont l'index (0) est retourne.
+		 */
+		clear(root.getContext());
+		_root = root;
+		return add(NO_PARENT, 0);
+	}
+
+	public void clear(SolverContext context) {
+		/*
+		 * Vide l'arbre, pour y indexer des Parkings de context a partir de racines ajoutees par addRoot
+		 * (un tel arbre n'est pas rejoue: ses chemins sont parcourus de la feuille vers la racine).
+		 */
+		_root = null;
+		_maxDistance = maxDistance(context);
+		_size = 0;
+	}
+
+	public int addRoot() {
+		/*
+		 * Indexe une racine supplementaire (sans parent ni deplacement) et retourne son index.
+		 */
+		return add(NO_PARENT, 0);
+	}
+
+	public int add(int parent, int carIndex, int move) {
+		/*
+		 * Indexe le Parking obtenu en deplacant de move positions la voiture carIndex du Parking
+		 * d'index parent, et retourne son index.
+		 */
+		int code = carIndex*2*_maxDistance + (move>0 ? move-1 : _maxDistance-move-1);
+		return add(parent, code);
+	}
+
+	private int add(int parent, int code) {
+		/*
+		 * Ajoute une entree de parent et de code de deplacement donnes, et retourne son index.
+		 */
+		if (_size == _parents.length) {
+			_parents = Arrays.copyOf(_parents, _size << 1);
+			_moves = Arrays.copyOf(_moves, _size << 1);
+		}
+		_parents[_size] = parent;
+		_moves[_size] = (short) code;
+		return _size++;
+	}
+
+	public int movedCar(int index) {
+		/*
+		 * Retourne la voiture deplacee pour obtenir le Parking d'index index (-1 pour la racine).
+		 */
+		if (_parents[index] == NO_PARENT) return -1;
+		return (_moves[index] & 0xFFFF) / (2*_maxDistance);
+	}
+
+	public int move(int index) {
+		/*
+		 * Retourne le deplacement (en positions) de la voiture movedCar(index) menant au Parking d'index
+		 * index a partir de son parent.
+		 */
+		int distance = (_moves[index] & 0xFFFF) % (2*_maxDistance);
+		return distance<_maxDistance ? distance+1 : _maxDistance-distance-1;
+	}
+
+	public int parent(int index) {
+		/*
+		 * Retourne l'index du parent du Parking d'index index (NO_PARENT pour une racine).
+		 */
+		return _parents[index];
+	}
+
+	public Parking replay(int index) {
+		/*
+		 * Reconstruit le chemin menant de la racine au Parking d'index index en rejouant les deplacements,
+		 * relie ses etapes par des Move et retourne la derniere (feuille de l'arbre).
+		 */
+		int length = 0;
+		for (int i=index; i!=0; i=_parents[i]) length++;
+		int[] steps = new int[length]; //Index des etapes, de la premiere a la derniere
+		for (int i=index; i!=0; i=_parents[i]) steps[--length] = i;
+
+		Parking prevParking = _root;
+		for (int step : steps) {
+			int carIndex = movedCar(step), move = move(step);
+
+			Parking nextParking = prevParking.newChild(carIndex, move, prevParking.childKey(carIndex, move)); //Voiture carIndex se deplace
+			nextParking._index = step;
+			new Move(prevParking, nextParking, carIndex); //Mouvement reliant les Parkings
+			prevParking = nextParking;
+		}
+		return prevParking;
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de Parkings indexes.
+		 */
+		return _size;
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre d'entrees allouees.
+		 */
+		return _parents.length;
+	}
+
+	static int maxDistance(SolverContext context) {
+		/*
+		 * Retourne la distance maximale d'un deplacement d'une voiture de context.
+		 */
+		return context._slideMoves ? Math.max(1, Math.max(context._width, context._height) - 1) : 1;
+	}
+
+	public static boolean fits(SolverContext context) {
+		/*
+		 * Retourne true si tous les deplacements possibles de context peuvent etre codes sur deux octets.
+		 */
+		return context._carsCount*2*maxDistance(context) <= MAX_CODES;
+	}
+}
@@ -0,0 +1,571 @@
+/**
+ * Generateur de Parkings difficiles. Les dispositions de voitures d'un plateau (suite des longueurs des
+ * voitures de chaque ligne et de chaque colonne, la Goal Car occupant seule la ligne de la sortie) dont
+ * le nombre de voitures est dans les bornes demandees sont numerotees, puis enumerees (toutes, ou un
+ * echantillon d'au plus _maxLayouts d'entre elles, tire selon une graine); l'espace des Parkings de chacune est enumere une seule fois, puis parcouru en
+ * largeur a partir des Parkings resolus (Goal Car a la sortie), les deplacements etant reversibles. Le
+ * Parking le plus eloigne de toute solution est le plus difficile de sa disposition, et les meilleurs,
+ * toutes dispositions confondues, sont retenus. Les dispositions sont reparties par tranches entre les
+ * threads; celles qui ne peuvent pas fournir de Parking interessant sont ecartees avant tout parcours
+ * (aucune voiture pouvant bloquer la sortie, voiture sans influence sur la sortie, trop de Parkings)
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.File; //repertoire des dessins
+import java.io.IOException; //ecriture des dessins impossible
+import java.io.PrintStream; //sortie des Parkings generes
+import java.math.BigInteger; //premiere disposition d'une tranche de l'echantillon
+import java.util.ArrayList; //suites de longueurs, Parkings retenus
+import java.util.Arrays; //agrandissement des tableaux
+import java.util.List; //Parkings retenus
+import java.util.PriorityQueue; //meilleurs Parkings d'un thread
+import java.util.SplittableRandom; //tirage de l'echantillon
+import java.util.concurrent.ExecutionException; //erreur d'un thread
+import java.util.concurrent.ExecutorService; //threads de generation
+import java.util.concurrent.Executors; //creation des threads
+import java.util.concurrent.Future; //Parkings retenus par un thread
+import java.util.concurrent.atomic.AtomicLong; //prochaine disposition a examiner
+
+public class PuzzleGenerator {
+	static final int[] CAR_LENGTHS = {2, 3}; //Longueurs (en cases) des voitures placees
+	static final int GOAL_LENGTH = 2; //Longueur de la Goal Car
+	static final int MAX_CARS = 26; //Une lettre par voiture dans le format d'une ligne
+	static final int CHUNK = 1 << 12; //Dispositions prises a la fois par un thread
+	static final int DEFAULT_MAX_STATES = 1 << 20; //Nombre maximal par defaut de Parkings d'une disposition
+	static final long DEFAULT_MAX_LAYOUTS = 1L << 24; //Nombre maximal par defaut de dispositions examinees
+	static final int RETAINED_FACTOR = 8; //Table recreee si elle depasse ce multiple de la derniere disposition
+
+	//Compteurs de la generation
+	static final int REJECTED_SHAPE = 0, REJECTED_STATES = 1, REJECTED_MOVES = 2, EXPLORED = 3, STATES = 4,
+			COUNTERS = 5;
+
+	final int _width, _height, _exitY; //Dimensions du plateau, Ligne de la sortie (a droite du plateau)
+	final int _minCars, _maxCars; //Nombre de voitures (Goal Car comprise) des Parkings generes
+	final boolean _slideMoves; //Mesure des deplacements: glissements (true) ou positions (false)
+	final int _minMoves; //Nombre minimal de deplacements d'un Parking retenu
+	final int _count; //Nombre de Parkings retenus
+	final int _maxStates; //Nombre de Parkings au-dela duquel une disposition est ecartee
+	final int _workers; //Nombre de threads de generation
+	final int[][][] _laneContents; //Suites de longueurs possibles de chaque rangee (lignes, puis colonnes), par nombre de voitures croissant
+	final int[][] _firstContents; //Index de la premiere suite de chaque nombre de voitures, pour chaque rangee
+	final long[][] _fillings; //Nombre de facons de placer exactement c voitures dans les rangees lane et suivantes
+	final long _layoutsCount; //Nombre de dispositions dont le nombre de voitures est dans [_minCars, _maxCars]
+	final long _samplesCount; //Nombre de dispositions examinees (toutes, ou au plus maxLayouts)
+	final long _sampleOffset, _sampleStep; //Disposition du i-eme echantillon: (_sampleOffset + i*_sampleStep) modulo _layoutsCount
+	final AtomicLong _nextSample = new AtomicLong(); //Premier echantillon non encore pris par un thread
+	final long[] _counters = new long[COUNTERS]; //Compteurs cumules des threads
+	long _millis; //Duree de la derniere generation
+
+	public PuzzleGenerator(int width, int height, int exitY, int minCars, int maxCars, boolean slideMoves,
+			int minMoves, int count, int maxStates, long maxLayouts, long seed, int workers) {
+		/*
+		 * Prepare la generation des count Parkings les plus difficiles (d'au moins minMoves deplacements)
+		 * d'un plateau de width x height cases, dont la sortie est a droite de la ligne exitY, comptant de
+		 * minCars a maxCars voitures, sur workers threads. Les dispositions de plus de maxStates Parkings
+		 * sont ecartees. Si le plateau compte plus de maxLayouts dispositions (0: aucune limite), seules
+		 * maxLayouts d'entre elles, distinctes et tirees selon seed, sont examinees.
+		 */
+		if (width <= GOAL_LENGTH || height < 1) throw new IllegalArgumentException("plateau trop petit");
+		if (exitY < 0 || exitY >= height) throw new IllegalArgumentException("la sortie n'est pas sur le cote du plateau");
+		if (minCars < 1 || maxCars > MAX_CARS || minCars > maxCars) {
+			throw new IllegalArgumentException(String.format("nombre de voitures hors de [1, %d]", MAX_CARS));
+		}
+		_width = width;
+		_height = height;
+		_exitY = exitY;
+		_minCars = minCars;
+		_maxCars = maxCars;
+		_slideMoves = slideMoves;
+		_minMoves = minMoves;
+		_count = count;
+		_maxStates = maxStates;
+		_workers = workers;
+
+		//Chaque ligne (sauf celle de la Goal Car) et chaque colonne recoit une suite de voitures
+		int lanes = height+width, maxOthers = maxCars-1; //Voitures autres que la Goal Car
+		_laneContents = new int[lanes][][];
+		_firstContents = new int[lanes][];
+		for (int lane=0; lane<lanes; lane++) {
+			_laneContents[lane] = lane==exitY ? new int[][] {{}} : laneContents(lane<height ? width : height);
+			_firstContents[lane] = new int[maxOthers+2];
+			for (int cars=0, index=0; cars<=maxOthers+1; cars++) {
+				while (index < _laneContents[lane].length && _laneContents[lane][index].length < cars) index++;
+				_firstContents[lane][cars] = index;
+			}
+		}
+
+		//Dispositions de chaque nombre de voitures, de la derniere rangee a la premiere: les nombres de
+		//voitures hors des bornes ne sont jamais numerotes
+		_fillings = new long[lanes+1][maxOthers+1];
+		_fillings[lanes][0] = 1;
+		try {
+			for (int lane=lanes-1; lane>=0; lane--) {
+				for (int cars=0; cars<=maxOthers; cars++) {
+					for (int laneCars=0; laneCars<=cars; laneCars++) {
+						long contents = _firstContents[lane][laneCars+1] - _firstContents[lane][laneCars];
+						_fillings[lane][cars] = Math.addExact(_fillings[lane][cars],
+								Math.multiplyExact(contents, _fillings[lane+1][cars-laneCars]));
+					}
+				}
+			}
+			long layoutsCount = 0;
+			for (int cars=minCars-1; cars<=maxOthers; cars++) layoutsCount = Math.addExact(layoutsCount, _fillings[0][cars]);
+			_layoutsCount = layoutsCount;
+		}
+		catch (ArithmeticException exception) {
+			throw new IllegalArgumentException("plateau trop grand pour numeroter ses dispositions");
+		}
+
+		//Echantillon: pas premier avec le nombre de dispositions, pour que les echantillons soient distincts
+		if (maxLayouts > 0 && maxLayouts < _layoutsCount) {
+			SplittableRandom random = new SplittableRandom(seed);
+			long step = 1 + random.nextLong(_layoutsCount-1);
+			while (BigInteger.valueOf(step).gcd(BigInteger.valueOf(_layoutsCount)).longValue() != 1) step++;
+			_samplesCount = maxLayouts;
+			_sampleOffset = random.nextLong(_layoutsCount);
+			_sampleStep = step;
+		}
+		else {
+			_samplesCount = _layoutsCount;
+			_sampleOffset = 0;
+			_sampleStep = 1;
+		}
+	}
+
+	static int[][] laneContents(int laneLength) {
+		/*
+		 * Retourne toutes les suites de longueurs de voitures (CAR_LENGTHS) tenant dans une rangee de
+		 * laneLength cases, de l'arriere vers l'avant de la rangee, la suite vide comprise, par nombre de
+		 * voitures croissant (chaque suite est prolongee dans l'ordre ou elle a ete ajoutee).
+		 */
+		ArrayList<int[]> contents = new ArrayList<int[]>();
+		contents.add(new int[0]);
+		for (int i=0; i<contents.size(); i++) { //Chaque suite est prolongee d'une voiture
+			int[] content = contents.get(i);
+			int used = 0;
+			for (int length : content) used += length;
+			for (int length : CAR_LENGTHS) {
+				if (used + length > laneLength) continue;
+				int[] longer = Arrays.copyOf(content, content.length+1);
+				longer[content.length] = length;
+				contents.add(longer);
+			}
+		}
+		return contents.toArray(new int[contents.size()][]);
+	}
+
+	public List<Puzzle> generate() throws InterruptedException {
+		/*
+		 * Examine les dispositions (ou l'echantillon) et retourne les Parkings retenus, du plus difficile
+		 * au moins difficile (a difficulte egale, dans l'ordre des dispositions: le resultat ne depend pas
+		 * du nombre de threads).
+		 */
+		long start = System.nanoTime();
+		_nextSample.set(0);
+		Arrays.fill(_counters, 0);
+		ExecutorService pool = Executors.newFixedThreadPool(_workers);
+		try {
+			ArrayList<Future<PriorityQueue<Puzzle>>> results = new ArrayList<Future<PriorityQueue<Puzzle>>>();
+			for (int worker=0; worker<_workers; worker++) results.add(pool.submit(() -> new Worker().run()));
+
+			PriorityQueue<Puzzle> best = new PriorityQueue<Puzzle>(PuzzleGenerator::compare);
+			for (Future<PriorityQueue<Puzzle>> result : results) {
+				for (Puzzle puzzle : result.get()) keep(best, puzzle, _count);
+			}
+			ArrayList<Puzzle> puzzles = new ArrayList<Puzzle>(best);
+			puzzles.sort((puzzle, other) -> compare(other, puzzle));
+			return puzzles;
+		}
+		catch (ExecutionException exception) {
+			throw new IllegalStateException("generation interrompue", exception.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+			_millis = (System.nanoTime() - start) / 1000000;
+		}
+	}
+
+	static int compare(Puzzle puzzle, Puzzle other) {
+		/*
+		 * Ordonne les Parkings du moins difficile au plus difficile: moins de deplacements, puis, a nombre
+		 * egal, disposition examinee apres.
+		 */
+		if (puzzle._moves != other._moves) return Integer.compare(puzzle._moves, other._moves);
+		return Long.compare(other._layout, puzzle._layout);
+	}
+
+	static void keep(PriorityQueue<Puzzle> best, Puzzle puzzle, int count) {
+		/*
+		 * Ajoute puzzle aux count meilleurs Parkings best (dont la tete est le moins difficile) s'il fait
+		 * partie des count meilleurs.
+		 */
+		if (best.size() < count) best.add(puzzle);
+		else if (count > 0 && compare(puzzle, best.peek()) > 0) {
+			best.poll();
+			best.add(puzzle);
+		}
+	}
+
+	public void write(List<Puzzle> puzzles, PrintStream output, File drawings) throws IOException {
+		/*
+		 * Ecrit sur output une ligne par Parking genere: nombre de deplacements, grille au format d'une
+		 * ligne et nombre de Parkings resolubles de sa disposition (comme les jeux de donnees publics).
+		 * Si drawings n'est pas null, chaque Parking y est aussi ecrit au format dessine des exemples.
+		 */
+		Renderer lines = new Renderer(), grid = new Renderer();
+		for (int rank=0; rank<puzzles.size(); rank++) {
+			Puzzle puzzle = puzzles.get(rank);
+			Parking start = puzzle.start();
+			lines.line(puzzle._moves + " " + grid.grid(start).take() + " " + puzzle._states);
+			if (drawings == null) continue;
+			if (!drawings.isDirectory() && !drawings.mkdirs()) throw new IOException("repertoire " + drawings + " impossible a creer");
+			try (PrintStream file = new PrintStream(new File(drawings, String.format("ParkingGenere%d.txt", rank+1)))) {
+				grid.puzzle(start).flush(file);
+			}
+		}
+		lines.flush(output);
+	}
+
+	public String summary() {
+		/*
+		 * Retourne le resume de la derniere generation.
+		 */
+		return String.format("Generation : %d disposition(s) examinee(s) sur %d, dont %d ecartee(s) pour leur forme, "
+				+ "%d pour leur nombre de Parkings et %d pour leur nombre de deplacements ; "
+				+ "%d disposition(s) parcourue(s), %d Parking(s), %d ms", _samplesCount, _layoutsCount,
+				_counters[REJECTED_SHAPE], _counters[REJECTED_STATES], _counters[REJECTED_MOVES],
+				_counters[EXPLORED], _counters[STATES], _millis);
+	}
+
+	public static final class Puzzle {
+		final SolverContext _context; //Disposition du Parking
+		final long _key; //Positions de depart des voitures
+		final int _moves; //Nombre minimal de deplacements menant la Goal Car a la sortie
+		final int _states; //Nombre de Parkings de la disposition d'ou la sortie est atteignable
+		final long _layout; //Numero de la disposition
+
+		Puzzle(SolverContext context, long key, int moves, int states, long layout) {
+			_context = context;
+			_key = key;
+			_moves = moves;
+			_states = states;
+			_layout = layout;
+		}
+
+		public Parking start() {
+			/*
+			 * Retourne le Parking de depart.
+			 */
+			return new Parking(_context, _context.unpackPositions(_key), _key);
+		}
+	}
+
+	final class Worker {
+		final int[] _choices = new int[_laneContents.length]; //Suite choisie pour chaque rangee
+		int _carsCount; //Nombre de voitures de la disposition choisie
+		final PriorityQueue<Puzzle> _best = new PriorityQueue<Puzzle>(PuzzleGenerator::compare); //Meilleurs Parkings du thread
+		final long[] _counters = new long[COUNTERS]; //Compteurs du thread
+		int[] _previousCars = new int[MAX_CARS]; //Voiture precedente dans la rangee de chaque voiture (-1: aucune)
+		int[] _positions = new int[MAX_CARS]; //Positions des voitures deja placees par l'enumeration
+		long[] _occupancy = new long[0]; //Cases occupees par les voitures deja placees, par voiture placee
+		long[] _requiredCells = new long[0]; //Cases occupees par chaque voiture et les suivantes, quelles que soient leurs positions
+		LongIntHashMap _indices = new LongIntHashMap(); //Index de chaque Parking de la disposition
+		long[] _keys = new long[1 << 10]; //Cles des Parkings de la disposition, dans l'ordre d'enumeration
+		int[] _distances = new int[1 << 10]; //Distance a la sortie de chaque Parking (-1: pas encore atteint)
+		int[] _queue = new int[1 << 10]; //File du parcours en largeur
+		int _statesCount; //Nombre de Parkings de la disposition
+		int _reachable; //Nombre de Parkings de la disposition d'ou la sortie est atteignable
+
+		PriorityQueue<Puzzle> run() {
+			/*
+			 * Examine des tranches de l'echantillon jusqu'a epuisement, et retourne les meilleurs Parkings.
+			 */
+			long first;
+			while ((first = _nextSample.getAndAdd(CHUNK)) < _samplesCount) {
+				if (Thread.currentThread().isInterrupted()) break;
+				long last = Math.min(first+CHUNK, _samplesCount);
+				long layout = BigInteger.valueOf(first).multiply(BigInteger.valueOf(_sampleStep))
+						.add(BigInteger.valueOf(_sampleOffset)).mod(BigInteger.valueOf(_layoutsCount)).longValue();
+				choose(layout);
+				for (long sample=first; sample<last; sample++) {
+					examine(layout);
+					layout += _sampleStep; //Somme inferieure a 2^64: comparee sans signe
+					if (Long.compareUnsigned(layout, _layoutsCount) >= 0) layout -= _layoutsCount;
+					if (sample+1 == last) break;
+					if (_sampleStep == 1) next(); //Dispositions consecutives: sans division
+					else choose(layout);
+				}
+			}
+			synchronized (PuzzleGenerator.this) {
+				for (int counter=0; counter<COUNTERS; counter++) PuzzleGenerator.this._counters[counter] += _counters[counter];
+			}
+			return _best;
+		}
+
+		private void choose(long layout) {
+			/*
+			 * Choisit la suite de chaque rangee de la disposition layout: les dispositions sont numerotees
+			 * par nombre total de voitures, puis, rangee apres rangee, par nombre de voitures de la rangee,
+			 * suite de la rangee et disposition des rangees suivantes (_fillings).
+			 */
+			int others = _minCars-1; //Voitures autres que la Goal Car
+			while (layout >= _fillings[0][others]) layout -= _fillings[0][others++];
+			_carsCount = 1 + others;
+			for (int lane=0; lane<_laneContents.length; lane++) {
+				for (int laneCars=0; ; laneCars++) {
+					long following = _fillings[lane+1][others-laneCars]; //Dispositions des rangees suivantes
+					long block = (_firstContents[lane][laneCars+1] - _firstContents[lane][laneCars]) * following;
+					if (layout >= block) {
+						layout -= block;
+						continue;
+					}
+					_choices[lane] = _firstContents[lane][laneCars] + (int) (layout / following);
+					layout %= following;
+					others -= laneCars;
+					break;
+				}
+			}
+		}
+
+		private void examine(long layout) {
+			/*
+			 * Retient le Parking le plus difficile de la disposition choisie, de numero layout, sauf si elle
+			 * est ecartee.
+			 */
+			if (!mayBlockExit()) {
+				_counters[REJECTED_SHAPE]++;
+				return;
+			}
+			SolverContext context = context();
+			if (context != null && (!context.fitsKey() || hasIdleCar(context))) {
+				_counters[REJECTED_SHAPE]++;
+				return;
+			}
+			if (context == null || !enumerate(context)) {
+				_counters[REJECTED_STATES]++;
+				return;
+			}
+			_counters[EXPLORED]++;
+			_counters[STATES] += _statesCount;
+
+			int farthest = explore(context);
+			if (farthest < 0 || _distances[farthest] < _minMoves) {
+				_counters[REJECTED_MOVES]++;
+				return;
+			}
+			keep(_best, new Puzzle(context, _keys[farthest], _distances[farthest], _reachable, layout), _count);
+		}
+
+		private void next() {
+			/*
+			 * Passe a la disposition suivante dans l'ordre de choose: la derniere rangee dont la suite peut
+			 * etre remplacee par une suite suivante (les rangees d'apres pouvant recevoir les voitures
+			 * restantes) change, et les rangees d'apres recoivent leurs premieres suites possibles; a
+			 * defaut, la disposition suivante compte une voiture de plus.
+			 */
+			int following = 0; //Voitures de la rangee examinee et des suivantes
+			for (int lane=_laneContents.length-1; lane>=0; lane--) {
+				following += _laneContents[lane][_choices[lane]].length;
+				for (int choice=_choices[lane]+1; choice<_laneContents[lane].length; choice++) {
+					int laneCars = _laneContents[lane][choice].length;
+					if (laneCars > following) break; //Suites par nombre de voitures croissant
+					if (_fillings[lane+1][following-laneCars] == 0) continue;
+					_choices[lane] = choice;
+					chooseFirst(lane+1, following-laneCars);
+					return;
+				}
+			}
+			int others = _carsCount; //Une voiture de plus que la disposition courante (Goal Car exclue)
+			while (others < _maxCars && _fillings[0][others] == 0) others++;
+			if (others == _maxCars) return; //Derniere disposition
+			_carsCount = 1 + others;
+			chooseFirst(0, others);
+		}
+
+		private void chooseFirst(int from, int cars) {
+			/*
+			 * Choisit la premiere suite de chaque rangee a partir de from telle que les rangees suivantes
+			 * puissent recevoir les voitures restantes, cars voitures etant a placer dans ces rangees.
+			 */
+			for (int lane=from; lane<_laneContents.length; lane++) {
+				for (int choice=0; ; choice++) {
+					int laneCars = _laneContents[lane][choice].length;
+					if (_fillings[lane+1][cars-laneCars] == 0) continue;
+					_choices[lane] = choice;
+					cars -= laneCars;
+					break;
+				}
+			}
+		}
+
+		private boolean mayBlockExit() {
+			/*
+			 * Retourne true si une colonne situee devant la position de depart la plus en arriere de la Goal
+			 * Car contient une voiture (sinon, la Goal Car n'est jamais bloquee).
+			 */
+			for (int column=GOAL_LENGTH; column<_width; column++) {
+				if (_laneContents[_height+column][_choices[_height+column]].length > 0) return true;
+			}
+			return false;
+		}
+
+		private SolverContext context() {
+			/*
+			 * Retourne la definition du probleme de la disposition choisie: la Goal Car (index 0), puis les
+			 * voitures de chaque rangee, de l'arriere vers l'avant. Chaque voiture est placee contre la
+			 * precedente de sa rangee: seules comptent les positions des voitures remplissant leur rangee
+			 * (voir SolverContext), qui n'en ont qu'une. Retourne null si deux voitures occupent une meme
+			 * case quelles que soient leurs positions: la disposition n'a alors aucun Parking.
+			 */
+			int words = (_width*_height + Long.SIZE-1) / Long.SIZE;
+			if (_requiredCells.length < (_carsCount+1)*words) _requiredCells = new long[(_carsCount+1)*words];
+			Arrays.fill(_requiredCells, 0, (_carsCount+1)*words, 0L);
+			requireCells(0, _exitY, 0, GOAL_LENGTH, _width-GOAL_LENGTH, words);
+			for (int lane=0, carIndex=1; lane<_laneContents.length; lane++) {
+				int[] content = _laneContents[lane][_choices[lane]];
+				int back = 0, length = 0; //Position minimale de la voiture, Longueur de la voiture et des suivantes
+				for (int carLength : content) length += carLength;
+				for (int carLength : content) {
+					requireCells(carIndex++, lane, back, carLength, (lane<_height ? _width : _height) - length, words);
+					back += carLength;
+					length -= carLength;
+				}
+			}
+
+			//Cases de chaque voiture et des suivantes: elles ne doivent pas se chevaucher
+			for (int carIndex=_carsCount-1; carIndex>=0; carIndex--) {
+				for (int word=0; word<words; word++) {
+					if ((_requiredCells[carIndex*words+word] & _requiredCells[(carIndex+1)*words+word]) != 0) return null;
+					_requiredCells[carIndex*words+word] |= _requiredCells[(carIndex+1)*words+word];
+				}
+			}
+
+			int[][] carCoordinates = new int[_carsCount][];
+			carCoordinates[0] = new int[] {_exitY, 0, _exitY, GOAL_LENGTH-1};
+			_previousCars[0] = -1;
+			for (int lane=0, carIndex=1; lane<_laneContents.length; lane++) {
+				int back = 0;
+				for (int carLength : _laneContents[lane][_choices[lane]]) {
+					carCoordinates[carIndex] = lane<_height
+							? new int[] {lane, back, lane, back+carLength-1} //Ligne lane
+							: new int[] {back, lane-_height, back+carLength-1, lane-_height}; //Colonne lane-_height
+					_previousCars[carIndex] = back==0 ? -1 : carIndex-1;
+					back += carLength;
+					carIndex++;
+				}
+			}
+			return new SolverContext(_width, _height, _width, _exitY, carCoordinates).withSlideMoves(_slideMoves);
+		}
+
+		private void requireCells(int carIndex, int lane, int minPosition, int length, int maxPosition, int words) {
+			/*
+			 * Retient dans _requiredCells les cases de la rangee lane occupees par la voiture carIndex, de
+			 * length cases, dans toutes ses positions de minPosition a maxPosition.
+			 */
+			for (int position=maxPosition; position<minPosition+length; position++) {
+				int cell = lane<_height ? lane*_width + position : position*_width + lane-_height;
+				SolverContext.setBit(_requiredCells, carIndex*words, cell);
+			}
+		}
+
+		private boolean hasIdleCar(SolverContext context) {
+			/*
+			 * Retourne true si une voiture mobile n'a aucune influence sur la sortie de la Goal Car: les
+			 * Parkings de la disposition sont alors aussi difficiles que ceux de la disposition sans elle.
+			 */
+			int movableCars = 0;
+			for (int carIndex=0; carIndex<context._carsCount; carIndex++) {
+				if (context.isMovable(carIndex)) movableCars++;
+			}
+			return context._movingCars.length != movableCars;
+		}
+
+		private boolean enumerate(SolverContext context) {
+			/*
+			 * Range dans _keys (et _indices) les cles de tous les Parkings de la disposition context: voitures
+			 * sans chevauchement, chacune restant derriere la suivante de sa rangee. Retourne false si les
+			 * voitures ne peuvent pas etre placees, ou des que la disposition compte plus de _maxStates Parkings.
+			 */
+			//Une table videe coute sa taille: trop grande pour la disposition precedente, elle est recreee
+			if (_indices.capacity() > RETAINED_FACTOR*Math.max(1 << 10, _statesCount)) _indices = new LongIntHashMap();
+			else _indices.clear();
+			_statesCount = 0;
+			int words = context._words;
+			if (_occupancy.length < (context._carsCount+1)*words) _occupancy = new long[(context._carsCount+1)*words];
+			Arrays.fill(_occupancy, 0, words, 0L);
+			return place(context, 0, 0L) && _statesCount > 0;
+		}
+
+		private boolean place(SolverContext context, int carIndex, long key) {
+			/*
+			 * Place la voiture carIndex et les suivantes de toutes les manieres possibles, les precedentes
+			 * occupant les positions de key. Retourne false si _maxStates est depasse.
+			 */
+			if (carIndex == context._carsCount) {
+				if (_statesCount == _maxStates) return false;
+				if (_statesCount == _keys.length) _keys = Arrays.copyOf(_keys, _statesCount << 1);
+				_keys[_statesCount] = key;
+				_indices.put(key, _statesCount++);
+				return true;
+			}
+			int words = context._words, occupied = carIndex*words;
+			long[] carMasks = context._carMasks[carIndex];
+			int previous = _previousCars[carIndex];
+			int from = previous<0 ? 0 : _positions[previous]+context._carSizes[previous]+1; //Derriere la precedente
+			for (int position=from; position<carMasks.length/words; position++) {
+				//Case libre, et dont aucune voiture suivante n'a besoin
+				boolean free = true;
+				for (int word=0; word<words; word++) {
+					free &= (carMasks[position*words+word] & (_occupancy[occupied+word] | _requiredCells[occupied+words+word])) == 0;
+				}
+				if (!free) continue;
+				for (int word=0; word<words; word++) {
+					_occupancy[occupied+words+word] = _occupancy[occupied+word] | carMasks[position*words+word];
+				}
+				_positions[carIndex] = position;
+				if (!place(context, carIndex+1, key | (long) position << context._carShifts[carIndex])) return false;
+			}
+			return true;
+		}
+
+		private int explore(SolverContext context) {
+			/*
+			 * Calcule la distance a la sortie de chaque Parking de la disposition context, par un parcours en
+			 * largeur partant de ceux ou la Goal Car est a la sortie, et retourne l'index du premier Parking
+			 * atteint le plus eloigne (-1 si la sortie n'est jamais atteinte).
+			 */
+			if (_distances.length < _statesCount) {
+				_distances = new int[_keys.length];
+				_queue = new int[_keys.length];
+			}
+			Arrays.fill(_distances, 0, _statesCount, -1);
+			long positionMask = (1L << context._bitsPerCar) - 1;
+			int exitGoalPosition = context.exitGoalPosition(), tail = 0;
+			for (int index=0; index<_statesCount; index++) {
+				if ((_keys[index] & positionMask) != exitGoalPosition) continue; //Goal Car (bits de poids faible)
+				_distances[index] = 0;
+				_queue[tail++] = index;
+			}
+
+			SolverScratch scratch = SolverScratch.acquireForExpansion(context);
+			Parking cursor = new Parking(context, new int[context._carsCount], 0L); //Parking developpe
+			int farthest = -1;
+			for (int head=0; head<tail; head++) {
+				int index = _queue[head];
+				if (farthest < 0 || _distances[index] > _distances[farthest]) farthest = index;
+				cursor._key = _keys[index];
+				context.unpackPositions(cursor._key, cursor._carPositions);
+				int childrenCount = cursor.expand(scratch);
+				for (int child=0; child<childrenCount; child++) {
+					int childIndex = _indices.get(scratch._childKeys[child], -1);
+					if (_distances[childIndex] >= 0) continue;
+					_distances[childIndex] = _distances[index]+1;
+					_queue[tail++] = childIndex;
+				}
+			}
+			_reachable = tail;
+			return farthest;
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/**
+ * Lecture des Parkings sans expressions regulieres ni chaines intermediaires: les octets du fichier
+ * sont parcourus directement. Deux formats sont reconnus:
+ * - le dessin ASCII des exemples (commencant par "Parking:"), eventuellement suivi de la liste des murs
+ *   ("Murs: n" puis une case "(ligne,colonne)" par ligne);
+ * - le format compact d'un Parking par ligne: une grille lue ligne a ligne, de 36 caracteres pour un
+ *   plateau 6x6 (ou precedee de "LxH:" pour d'autres dimensions), 'o' ou '.' pour une case vide, 'x'
+ *   pour un mur et une lettre par voiture, 'A' designant la Goal Car (sortie au bout de sa rangee, a
+ *   droite ou en bas).
+ *   D'autres champs peuvent entourer la grille (nombre de coups, etc.), comme dans les jeux de
+ *   donnees publics de Rush Hour. Un fichier de ce format est projete en memoire et lu ligne a ligne.
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.File; //fichier a lire
+import java.io.IOException; //fichier illisible ou mal forme
+import java.io.RandomAccessFile; //ouverture du fichier a projeter
+import java.nio.ByteBuffer; //octets du fichier
+import java.nio.channels.FileChannel; //projection du fichier
+import java.util.Arrays; //cases des murs
+
+public class PuzzleParser {
+	static final byte[] DRAWING_HEADER = {'P', 'a', 'r', 'k', 'i', 'n', 'g'}; //Debut du format dessine
+
+	final ByteBuffer _data; //Octets lus (positions absolues)
+	int _position; //Prochain octet a lire
+	final int _end; //Fin de la zone a lire
+
+	PuzzleParser(ByteBuffer data, int from, int to) {
+		_data = data;
+		_position = from;
+		_end = to;
+	}
+
+	public static ByteBuffer map(File file) throws IOException {
+		/*
+		 * Projette file en memoire (fichiers de moins de 2 Go).
+		 */
+		try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	public static boolean isDrawing(ByteBuffer data) {
+		/*
+		 * Retourne true si data contient un Parking dessine, false s'il s'agit du format d'une ligne.
+		 */
+		if (data.limit() < DRAWING_HEADER.length) return false;
+		for (int i=0; i<DRAWING_HEADER.length; i++) {
+			if (data.get(i) != DRAWING_HEADER[i]) return false;
+		}
+		return true;
+	}
+
+	public static Parking parseFile(File file) throws IOException {
+		/*
+		 * Retourne le Parking decrit dans file: le Parking dessine, ou le premier Parking du format d'une ligne.
+		 */
+		ByteBuffer data = map(file);
+		if (isDrawing(data)) return parseDrawing(data);
+		int lineEnd = lineEnd(data, 0);
+		return parseLine(data, 0, lineEnd);
+	}
+
+	public static int lineEnd(ByteBuffer data, int from) {
+		/*
+		 * Retourne la position du saut de ligne terminant la ligne commencant a from (ou la fin de data).
+		 */
+		int position = from;
+		while (position < data.limit() && data.get(position) != '\n') position++;
+		return position;
+	}
+
+	//FORMAT DESSINE
+	public static Parking parseDrawing(ByteBuffer data) throws IOException {
+		/*
+		 * Lit le Parking dessine de data (dimensions, dessin avec la sortie, nombre de voitures, puis
+		 * coordonnees [(ligne,colonne), (ligne,colonne)] de chaque voiture, et enfin murs eventuels).
+		 */
+		PuzzleParser parser = new PuzzleParser(data, 0, data.limit());
+
+		// DIMENSIONS ("Parking: largeur fois hauteur")
+		int width = parser.nextInt();
+		int height = parser.nextInt();
+		parser.nextLine();
+		int exitX = width, exitY = 2; //Sortie par defaut (au cas ou dessin mal fait)
+
+		// DESSIN DU PARKING ET SORTIES
+		int column = parser.openBorderColumn(width); //Sortie en haut ?
+		if (column >= 0) { exitX = column; exitY = -1; }
+		for (int row=0; row<height; row++) { //Sortie sur cotes ?
+			if (parser.firstVisible() != '|') { exitX = -1; exitY = row; }
+			else if (parser.lastVisible() != '|') { exitX = width; exitY = row; }
+			parser.nextLine();
+			if (row != height-1) parser.nextLine(); //Passe le separateur
+		}
+		column = parser.openBorderColumn(width); //Sortie en bas ?
+		if (column >= 0) { exitX = column; exitY = height; }
+
+		// NOMBRE DE VOITURES (Goal, puis autres)
+		parser.nextLine(); //Passe ligne inutile
+		parser.skipPast(':');
+		int carsCount = parser.nextInt();
+		parser.nextLine();
+		parser.skipPast(':');
+		carsCount += parser.nextInt();
+		parser.nextLine();
+		parser.nextLine(); //Passe ligne inutile
+
+		// COORDONNEES DES VOITURES
+		int[][] carCoordinates = new int[carsCount][4];
+		for (int carIndex=0; carIndex<carsCount; carIndex++) {
+			parser.skipPast(':');
+			for (int i=0; i<4; i++) carCoordinates[carIndex][i] = parser.nextInt();
+			parser.nextLine();
+			Escape.arrangeCoord(carCoordinates[carIndex]); //Rearrange les coordonnees (arriere puis avant)
+		}
+
+		// MURS EVENTUELS ("Murs: n", puis une case par ligne)
+		parser.skipBlanks();
+		int[] wallCells = new int[0];
+		if (parser._position < parser._end) {
+			parser.skipPast(':');
+			wallCells = new int[parser.nextInt()];
+			parser.nextLine();
+			for (int wall=0; wall<wallCells.length; wall++) {
+				int row = parser.nextInt();
+				wallCells[wall] = row*width + parser.nextInt();
+				parser.nextLine();
+			}
+		}
+		return new Parking(width, height, exitX, exitY, carCoordinates, wallCells);
+	}
+
+	private int openBorderColumn(int width) throws IOException {
+		/*
+		 * Lit une ligne de bord ("+---+---+...") et retourne la colonne du dernier segment ouvert (autre
+		 * que "---"), ou -1 si le bord est ferme.
+		 */
+		int open = -1;
+		skipPast('+');
+		for (int column=0; column<width; column++) {
+			int length = 0;
+			boolean wall = true;
+			while (_position < _end && _data.get(_position) != '+' && _data.get(_position) != '\n') {
+				wall &= _data.get(_position) == '-';
+				length++;
+				_position++;
+			}
+			if (_position >= _end || _data.get(_position) != '+') throw error("bord du parking incomplet");
+			_position++;
+			if (!wall || length != 3) open = column;
+		}
+		nextLine();
+		return open;
+	}
+
+	private byte firstVisible() {
+		/*
+		 * Retourne le premier caractere non blanc de la ligne courante (0 si aucun).
+		 */
+		for (int position=_position; position<_end && _data.get(position)!='\n'; position++) {
+			if (!isBlank(_data.get(position))) return _data.get(position);
+		}
+		return 0;
+	}
+
+	private byte lastVisible() {
+		/*
+		 * Retourne le dernier caractere non blanc de la ligne courante (0 si aucun).
+		 */
+		byte last = 0;
+		for (int position=_position; position<_end && _data.get(position)!='\n'; position++) {
+			if (!isBlank(_data.get(position))) last = _data.get(position);
+		}
+		return last;
+	}
+
+	//FORMAT D'UNE LIGNE
+	public static Parking parseLine(ByteBuffer data, int from, int to) throws IOException {
+		/*
+		 * Lit le Parking de la ligne [from, to[ de data: la grille est le premier champ (separe par des
+		 * blancs) qui n'est pas un nombre.
+		 */
+		PuzzleParser parser = new PuzzleParser(data, from, to);
+		while (true) {
+			parser.skipBlanks();
+			if (parser._position >= to) throw parser.error("grille absente");
+			int fieldEnd = parser._position;
+			boolean number = true;
+			while (fieldEnd < to && !isBlank(data.get(fieldEnd))) number &= isDigit(data.get(fieldEnd++));
+			if (!number) return parser.parseGrid(fieldEnd);
+			parser._position = fieldEnd;
+		}
+	}
+
+	private Parking parseGrid(int gridEnd) throws IOException {
+		/*
+		 * Lit la grille [_position, gridEnd[ et retourne le Parking correspondant.
+		 */
+		int width = 6, height = 6; //Dimensions par defaut des jeux de donnees publics
+		int separator = _position;
+		while (separator < gridEnd && _data.get(separator) != ':') separator++;
+		if (separator < gridEnd) { //Dimensions explicites "LxH:"
+			width = nextInt();
+			height = nextInt();
+			_position = separator+1;
+		}
+		if (gridEnd - _position != width*height) throw error("grille de taille incorrecte");
+
+		//Premiere et derniere case de chaque lettre, et nombre de cases
+		int[] first = new int[26], last = new int[26], cells = new int[26];
+		int[] carOfLetter = new int[26]; //Index de voiture de chaque lettre (0: lettre absente)
+		int[] wallCells = new int[width*height]; //Cases des murs
+		int carsCount = 1, wallsCount = 0; //La Goal Car ('A') a l'index 0
+		for (int cell=0; cell<width*height; cell++) {
+			byte symbol = _data.get(_position+cell);
+			if (symbol == 'o' || symbol == '.') continue;
+			if (symbol == 'x') {
+				wallCells[wallsCount++] = cell;
+				continue;
+			}
+			if (symbol < 'A' || symbol > 'Z') throw error(String.format("case '%c' non geree", (char) symbol));
+			int letter = symbol - 'A';
+			if (cells[letter]++ == 0) {
+				first[letter] = cell;
+				if (letter != 0) carOfLetter[letter] = carsCount++;
+			}
+			last[letter] = cell;
+		}
+		if (cells[0] == 0) throw error("Goal Car 'A' absente");
+
+		int[][] carCoordinates = new int[carsCount][];
+		for (int letter=0; letter<26; letter++) {
+			if (cells[letter] == 0) continue;
+			int backY = first[letter]/width, backX = first[letter]%width;
+			int frontY = last[letter]/width, frontX = last[letter]%width;
+			boolean straight = cells[letter] >= 2 && (backY == frontY
+					? frontX-backX == cells[letter]-1 //Horizontale et contigue
+					: backX == frontX && frontY-backY == cells[letter]-1); //Verticale et contigue
+			if (!straight) throw error(String.format("voiture '%c' mal formee", (char) ('A'+letter)));
+			carCoordinates[carOfLetter[letter]] = new int[] {backY, backX, frontY, frontX};
+		}
+
+		//Sortie au bout de la rangee de la Goal Car
+		boolean goalHorizontal = carCoordinates[0][0] == carCoordinates[0][2];
+		int exitX = goalHorizontal ? width : carCoordinates[0][1];
+		int exitY = goalHorizontal ? carCoordinates[0][0] : height;
+		return new Parking(width, height, exitX, exitY, carCoordinates, Arrays.copyOf(wallCells, wallsCount));
+	}
+
+	//LECTURE DES OCTETS
+	private int nextInt() throws IOException {
+		/*
+		 * Passe les caracteres jusqu'au prochain chiffre de la ligne courante et retourne le nombre lu.
+		 */
+		while (_position < _end && !isDigit(_data.get(_position))) {
+			if (_data.get(_position) == '\n') throw error("nombre attendu");
+			_position++;
+		}
+		if (_position >= _end) throw error("nombre attendu");
+		int value = 0;
+		while (_position < _end && isDigit(_data.get(_position))) value = 10*value + (_data.get(_position++) - '0');
+		return value;
+	}
+
+	private void skipPast(char symbol) throws IOException {
+		/*
+		 * Passe les caracteres de la ligne courante jusqu'a symbol inclus.
+		 */
+		while (_position < _end && _data.get(_position) != symbol) {
+			if (_data.get(_position) == '\n') throw error(String.format("'%c' attendu", symbol));
+			_position++;
+		}
+		if (_position >= _end) throw error(String.format("'%c' attendu", symbol));
+		_position++;
+	}
+
+	private void skipBlanks() {
+		/*
+		 * Passe les blancs.
+		 */
+		while (_position < _end && isBlank(_data.get(_position))) _position++;
+	}
+
+	private void nextLine() {
+		/*
+		 * Passe au debut de la ligne suivante.
+		 */
+		while (_position < _end && _data.get(_position) != '\n') _position++;
+		if (_position < _end) _position++;
+	}
+
+	private IOException error(String message) {
+		/*
+		 * Retourne l'erreur de format message, situee a la position courante.
+		 */
+		return new IOException(String.format("%s (octet %d)", message, _position));
+	}
+
+	static boolean isDigit(byte symbol) {
+		return symbol >= '0' && symbol <= '9';
+	}
+
+	static boolean isBlank(byte symbol) {
+		return symbol == ' ' || symbol == '\t' || symbol == '\r' || symbol == '\n';
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Mise en forme des Parkings et des solutions dans un tampon reutilisable, ecrit en une seule fois.
+ * Trois formes de solution sont disponibles: le texte detaille (dessins et deplacements de chaque
+ * voiture), la suite compacte des deplacements ("A+2 B-1 ...", la Goal Car etant A et la voiture i la
+ * i-eme lettre suivante, ou un mot fixe en cas d'echec) et un objet JSON. Les solutions successives
+ * d'une resolution progressive sont annoncees sur une ligne chacune
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.PrintStream; //sortie du tampon
+import java.util.Arrays; //remplissage des noms de cases
+import java.util.Locale; //nombres JSON
+
+public class Renderer {
+	static final String NO_SOLUTION = "aucune solution"; //Raison de l'absence de solution, si la recherche n'en trouve pas
+	static final String MOVES_NONE = "NONE"; //Resultat compact d'un Parking sans solution
+	static final String MOVES_ERROR = "ERROR"; //Resultat compact d'un Parking non resolu (delai, budget, erreur)
+
+	final StringBuilder _buffer = new StringBuilder(1 << 12); //Texte en attente d'ecriture
+
+	public Renderer line(String text) {
+		/*
+		 * Ajoute text suivi d'un saut de ligne.
+		 */
+		_buffer.append(text).append('\n');
+		return this;
+	}
+
+	public Renderer board(Parking parking) {
+		/*
+		 * Ajoute le dessin de parking: bords, sortie, puis nom des voitures sur chaque case ("###" pour
+		 * un mur).
+		 */
+		SolverContext context = parking.getContext();
+		int width = context._width, height = context._height;
+		char[] names = new char[width*height*3]; //Nom (3 caracteres) de la voiture de chaque case
+		Arrays.fill(names, ' ');
+		for (int cell=0; cell<width*height; cell++) {
+			if (SolverContext.isSet(context._walls, cell)) Arrays.fill(names, 3*cell, 3*cell+3, '#');
+		}
+		for (int carIndex=0; carIndex<context._carsCount; carIndex++) {
+			for (int offset=0; offset<=context._carSizes[carIndex]; offset++) {
+				int cell = context._laneCells[carIndex][parking._carPositions[carIndex]+offset];
+				if (carIndex==0) {
+					names[3*cell+1] = 'G'; //Voiture GOAL
+				}
+				else { //" c1", "c12", "123": derniers caracteres de " c" suivi du numero
+					String name = " c" + carIndex;
+					name.getChars(name.length()-3, name.length(), names, 3*cell);
+				}
+			}
+		}
+
+		//Ligne superieure
+		border(context, -1);
+		for (int row=0; row<height; row++) {
+			_buffer.append(context._exitY==row && context._exitX==-1 ? ' ' : '|'); //Sortie ou mur
+			for (int column=0; column<width; column++) {
+				if (column!=0) _buffer.append(' ');
+				_buffer.append(names, 3*(row*width+column), 3);
+			}
+			_buffer.append(context._exitY==row && context._exitX==width ? ' ' : '|').append('\n');
+
+			//Separateur
+			if (row!=height-1) {
+				for (int column=0; column<width; column++) _buffer.append("+   ");
+				_buffer.append("+\n");
+			}
+		}
+		border(context, height);
+		return this;
+	}
+
+	private void border(SolverContext context, int exitY) {
+		/*
+		 * Ajoute le bord superieur (exitY = -1) ou inferieur (exitY = hauteur), ouvert a la sortie.
+		 */
+		for (int column=0; column<context._width; column++) {
+			_buffer.append(context._exitY==exitY && column==context._exitX ? "+   " : "+---"); //Sortie ou mur
+		}
+		_buffer.append("+\n");
+	}
+
+	public Renderer puzzle(Parking parking) {
+		/*
+		 * Ajoute le fichier decrivant parking au format dessine des exemples (lu par PuzzleParser):
+		 * dimensions, dessin avec la sortie, nombre de voitures, coordonnees de chaque voiture, puis murs
+		 * s'il y en a.
+		 */
+		SolverContext context = parking.getContext();
+		_buffer.append("Parking: ").append(context._width).append(" fois ").append(context._height).append('\n');
+		board(parking);
+		_buffer.append("Elements du Parking:\n voiture Goal: 1\n autre voitures: ").append(context._carsCount-1);
+		_buffer.append("\nEmplacements:\n");
+		for (int carIndex=0; carIndex<context._carsCount; carIndex++) {
+			_buffer.append(carIndex==0 ? " voiture Goal: " : " voiture " + carIndex + ": ");
+			coordinates(parking, carIndex);
+			_buffer.append('\n');
+		}
+		if (!context.hasWalls()) return this;
+		int wallsCount = 0;
+		for (int cell=0; cell<context._width*context._height; cell++) {
+			if (SolverContext.isSet(context._walls, cell)) wallsCount++;
+		}
+		_buffer.append("Murs: ").append(wallsCount).append('\n');
+		for (int cell=0; cell<context._width*context._height; cell++) {
+			if (!SolverContext.isSet(context._walls, cell)) continue;
+			_buffer.append(" (").append(cell/context._width).append(',').append(cell%context._width).append(")\n");
+		}
+		return this;
+	}
+
+	public Renderer grid(Parking parking) {
+		/*
+		 * Ajoute la grille de parking au format d'une ligne (lu par PuzzleParser): dimensions "LxH:" si
+		 * le plateau n'est pas 6x6, puis le contenu de chaque case ligne a ligne, 'o' si elle est vide,
+		 * 'x' pour un mur, sinon le nom court de sa voiture. Ce format suppose au plus 26 voitures et la
+		 * sortie au bout de la rangee de la Goal Car.
+		 */
+		SolverContext context = parking.getContext();
+		if (context._width != 6 || context._height != 6) {
+			_buffer.append(context._width).append('x').append(context._height).append(':');
+		}
+		char[] cells = new char[context._width*context._height];
+		Arrays.fill(cells, 'o');
+		for (int cell=0; cell<cells.length; cell++) {
+			if (SolverContext.isSet(context._walls, cell)) cells[cell] = 'x';
+		}
+		for (int carIndex=0; carIndex<context._carsCount; carIndex++) {
+			for (int offset=0; offset<=context._carSizes[carIndex]; offset++) {
+				cells[context._laneCells[carIndex][parking._carPositions[carIndex]+offset]] = (char) ('A' + carIndex);
+			}
+		}
+		_buffer.append(cells);
+		return this;
+	}
+
+	public Renderer coordinates(Parking parking, int carIndex) {
+		/*
+		 * Ajoute les coordonnees de la voiture carIndex: [(ligne,colonne), (ligne,colonne)] de son arriere
+		 * puis de son avant.
+		 */
+		SolverContext context = parking.getContext();
+		int back = parking._carPositions[carIndex];
+		int backCell = context._laneCells[carIndex][back];
+		int frontCell = context._laneCells[carIndex][back+context._carSizes[carIndex]];
+		_buffer.append("[(").append(backCell/context._width).append(',').append(backCell%context._width);
+		_buffer.append("), (").append(frontCell/context._width).append(',').append(frontCell%context._width);
+		_buffer.append(")]");
+		return this;
+	}
+
+	public Renderer steps(Parking solution) {
+		/*
+		 * Ajoute la resolution detaillee menant a la feuille solution: situation initiale, nombre de
+		 * deplacements, coordonnees successives de chaque voiture deplacee, situation finale.
+		 */
+		Parking[] path = path(solution);
+		Parking prevStep = path[0];
+		int prevMovedCar = -1; //Index de la voiture deplacee a l'etape precedente
+
+		_buffer.append("Situation initiale :\n");
+		board(prevStep);
+
+		String moveName = prevStep.getContext()._slideMoves ? "glissements" : "mouvements"; //Mesure des deplacements
+		_buffer.append("\nUne façon de sortir du Parking en ").append(path.length-1).append(' ').append(moveName);
+		_buffer.append(" a été trouvée.\n");
+
+		for (int step=1; step<path.length; step++) {
+			Parking thisStep = path[step];
+			int thisMovedCar = thisStep.getParentMove().getMovedCar(); //Index de la voiture deplacee a cette etape-ci
+
+			//Si c'est une nouvelle voiture qui est deplacee, on l'affiche
+			if (prevMovedCar != thisMovedCar) {
+				if (thisMovedCar == 0) _buffer.append("\nDéplacements voiture Goal :\n");
+				else _buffer.append("\nDéplacements car ").append(thisMovedCar).append(" :\n");
+				coordinates(prevStep, thisMovedCar);
+				prevMovedCar = thisMovedCar;
+			}
+			_buffer.append(" -> ");
+			coordinates(thisStep, thisMovedCar);
+			prevStep = thisStep;
+		}
+		_buffer.append("\n\n");
+
+		_buffer.append("Situation finale :\n");
+		return board(prevStep);
+	}
+
+	public Renderer moves(Parking solution) {
+		/*
+		 * Ajoute la suite compacte des deplacements menant a la feuille solution, les deplacements
+		 * successifs d'une voiture dans le meme sens etant regroupes ("A+2 B-1").
+		 */
+		Parking[] path = path(solution);
+		int start = _buffer.length();
+		int movedCar = -1, distance = 0; //Deplacement en cours de regroupement
+		for (int step=1; step<path.length; step++) {
+			int carIndex = path[step].getParentMove().getMovedCar();
+			int move = path[step]._carPositions[carIndex] - path[step-1]._carPositions[carIndex];
+			if (carIndex != movedCar || (move > 0) != (distance > 0)) {
+				if (movedCar >= 0) move(movedCar, distance);
+				movedCar = carIndex;
+				distance = 0;
+			}
+			distance += move;
+		}
+		if (movedCar >= 0) move(movedCar, distance);
+		if (_buffer.length() > start) _buffer.setLength(_buffer.length()-1); //Retire l'espace final
+		return this;
+	}
+
+	private void move(int carIndex, int distance) {
+		/*
+		 * Ajoute le deplacement de distance positions de la voiture carIndex ("B-1"), suivi d'un espace.
+		 */
+		carName(carIndex);
+		_buffer.append(distance > 0 ? '+' : '-').append(Math.abs(distance)).append(' ');
+	}
+
+	private void carName(int carIndex) {
+		/*
+		 * Ajoute le nom court de la voiture carIndex: lettre pour les 26 premieres, "#index" au-dela.
+		 */
+		if (carIndex < 26) _buffer.append((char) ('A' + carIndex));
+		else _buffer.append('#').append(carIndex);
+	}
+
+	public Renderer json(String name, Parking solution, String failure) {
+		/*
+		 * Ajoute sur une ligne l'objet JSON du resultat du Parking name (omis si null): la solution si
+		 * solution n'est pas null, sinon la raison failure de l'absence de solution (null si la recherche
+		 * n'en a trouve aucune).
+		 */
+		_buffer.append('{');
+		if (name != null) {
+			_buffer.append("\"name\":");
+			string(name);
+			_buffer.append(',');
+		}
+		return jsonResult(solution, failure);
+	}
+
+	private Renderer jsonResult(Parking solution, String failure) {
+		/*
+		 * Ajoute les membres du resultat JSON (solution, ou raison failure de son absence) et ferme l'objet.
+		 */
+		if (solution == null) {
+			_buffer.append("\"solved\":false,\"reason\":");
+			string(failure==null ? NO_SOLUTION : failure);
+			_buffer.append("}\n");
+			return this;
+		}
+		Parking[] path = path(solution);
+		_buffer.append("\"solved\":true,\"metric\":\"");
+		_buffer.append(solution.getContext()._slideMoves ? "slide" : "step");
+		_buffer.append("\",\"count\":").append(path.length-1).append(",\"moves\":\"");
+		moves(solution);
+		_buffer.append("\",\"steps\":[");
+		for (int step=1; step<path.length; step++) {
+			int carIndex = path[step].getParentMove().getMovedCar();
+			if (step > 1) _buffer.append(',');
+			_buffer.append("{\"car\":").append(carIndex).append(",\"move\":");
+			_buffer.append(path[step]._carPositions[carIndex] - path[step-1]._carPositions[carIndex]).append('}');
+		}
+		_buffer.append("]}\n");
+		return this;
+	}
+
+	private void string(String text) {
+		/*
+		 * Ajoute text sous forme de chaine JSON.
+		 */
+		_buffer.append('"');
+		for (int i=0; i<text.length(); i++) {
+			char symbol = text.charAt(i);
+			if (symbol == '"' || symbol == '\\') _buffer.append('\\').append(symbol);
+			else if (symbol < ' ') _buffer.append(String.format("\\u%04x", (int) symbol));
+			else _buffer.append(symbol);
+		}
+		_buffer.append('"');
+	}
+
+	public Renderer improvement(String mode, Parking solution, int moves, boolean optimal, long elapsedNanos) {
+		/*
+		 * Ajoute sur une ligne la solution amelioree d'une resolution progressive, trouvee elapsedNanos
+		 * nanosecondes apres son debut, sous la forme mode ("text", "moves" ou "json"), en indiquant si
+		 * son optimalite est prouvee.
+		 */
+		double millis = elapsedNanos / 1e6;
+		if (mode.equals("json")) {
+			_buffer.append("{\"optimal\":").append(optimal).append(",\"millis\":");
+			_buffer.append(String.format(Locale.ROOT, "%.3f", millis)).append(',');
+			return jsonResult(solution, null);
+		}
+		if (mode.equals("moves")) {
+			_buffer.append(moves).append(optimal ? " optimale" : " provisoire");
+			_buffer.append(String.format(" (%.1f ms) : ", millis));
+		}
+		else {
+			String moveName = solution.getContext()._slideMoves ? "glissements" : "mouvements"; //Mesure des deplacements
+			_buffer.append("Solution ").append(optimal ? "optimale" : "provisoire").append(" en ").append(moves);
+			_buffer.append(' ').append(moveName).append(String.format(" trouvée après %.1f ms : ", millis));
+		}
+		moves(solution);
+		_buffer.append('\n');
+		return this;
+	}
+
+	public Renderer result(String mode, String name, Parking root, Parking solution, String failure) {
+		/*
+		 * Ajoute le resultat du Parking root sous la forme mode ("text", "moves" ou "json"): la solution
+		 * si solution n'est pas null, sinon la raison failure de l'absence de solution (null si la
+		 * recherche n'en a trouve aucune). Sous la forme compacte, l'absence de solution est le mot
+		 * MOVES_NONE, sans sa raison (que l'appelant peut ecrire sur la sortie d'erreur).
+		 */
+		if (mode.equals("json")) return json(name, solution, failure);
+		if (mode.equals("moves")) {
+			if (solution == null) return movesFailure(name, MOVES_NONE);
+			if (name != null) _buffer.append(name).append(" : ");
+			moves(solution);
+			_buffer.append('\n');
+			return this;
+		}
+		if (solution != null) return steps(solution);
+		_buffer.append("Situation :\n");
+		board(root);
+		return line(failure==null ? "Il n'y a pas de solution au problème" : "Il n'y a pas de solution car " + failure);
+	}
+
+	public Renderer error(String mode, String name, String message) {
+		/*
+		 * Ajoute le resultat du Parking name (omis si null), non resolu a cause de l'erreur message (delai,
+		 * budget memoire, fichier illisible), sous la forme mode: le mot MOVES_ERROR sous la forme compacte
+		 * (sans message, que l'appelant peut ecrire sur la sortie d'erreur), message sinon.
+		 */
+		if (mode.equals("json")) return json(name, null, message);
+		if (mode.equals("moves")) return movesFailure(name, MOVES_ERROR);
+		return line(name == null ? message : name + " : " + message);
+	}
+
+	private Renderer movesFailure(String name, String token) {
+		/*
+		 * Ajoute sur une ligne le mot token, resultat compact du Parking name (omis si null): la sortie
+		 * reste lisible par un programme, sans texte a interpreter.
+		 */
+		if (name != null) _buffer.append(name).append(" : ");
+		_buffer.append(token).append('\n');
+		return this;
+	}
+
+	public String take() {
+		/*
+		 * Retourne le texte en attente et vide le tampon.
+		 */
+		String text = _buffer.toString();
+		_buffer.setLength(0);
+		return text;
+	}
+
+	public void flush(PrintStream output) {
+		/*
+		 * Ecrit le texte en attente sur output en une seule fois et vide le tampon.
+		 */
+		output.print(take());
+		output.flush();
+	}
+
+	static Parking[] path(Parking solution) {
+		/*
+		 * Retourne les etapes menant de la racine a la feuille solution.
+		 */
+		int length = 1;
+		for (Parking step=solution; step.getParentParking()!=null; step=step.getParentParking()) length++;
+		Parking[] path = new Parking[length];
+		for (Parking step=solution; step!=null; step=step.getParentParking()) path[--length] = step;
+		return path;
+	}
+}
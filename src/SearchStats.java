@@ -0,0 +1,186 @@
+/**
+ * Instrumentation des recherches: pour chaque niveau parcouru, taille du niveau, Parkings developpes,
+ * deplacements generes, doublons rejetes, Parkings generes au total et temps passe. Chaque niveau est
+ * emis comme evenement JFR (unblockme.SearchLevel) et cumule dans des compteurs JMX. Desactivee (par
+ * defaut), elle se limite a un test par niveau dans les algorithmes de recherche
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.lang.management.ManagementFactory; //serveur JMX de la JVM
+import java.util.ArrayList; //niveaux d'une resolution
+import java.util.concurrent.atomic.LongAdder; //compteurs partages entre resolutions
+import javax.management.JMException; //enregistrement JMX impossible
+import javax.management.ObjectName; //nom de l'objet JMX
+import jdk.jfr.Category; //evenements JFR
+import jdk.jfr.Event; //evenements JFR
+import jdk.jfr.Label; //evenements JFR
+import jdk.jfr.Name; //evenements JFR
+
+public class SearchStats implements SearchStatsMXBean {
+	static final String OBJECT_NAME = "UnblockMe:type=SearchStats"; //Nom de l'objet JMX
+
+	static volatile SearchStats _instance; //Compteurs de la JVM, null si l'instrumentation est desactivee
+
+	final LongAdder _searches = new LongAdder(); //Resolutions terminees
+	final LongAdder _levels = new LongAdder(); //Niveaux parcourus
+	final LongAdder _expanded = new LongAdder(); //Parkings developpes
+	final LongAdder _generated = new LongAdder(); //Deplacements generes
+	final LongAdder _duplicates = new LongAdder(); //Deplacements menant a un Parking deja genere
+	final LongAdder _nanos = new LongAdder(); //Temps passe dans les niveaux
+	volatile int _currentLevel; //Dernier niveau parcouru (toutes resolutions confondues)
+	volatile long _currentFrontier, _currentVisited; //Taille de ce niveau, Parkings generes par sa resolution
+	volatile Search _lastSearch; //Derniere resolution terminee
+
+	public static synchronized SearchStats enable() {
+		/*
+		 * Active l'instrumentation des recherches suivantes et enregistre les compteurs aupres du serveur JMX.
+		 */
+		if (_instance != null) return _instance;
+		SearchStats stats = new SearchStats();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException exception) {
+			System.err.println("Compteurs JMX indisponibles : " + exception.getMessage());
+		}
+		_instance = stats;
+		return stats;
+	}
+
+	public static Search begin(String engine) {
+		/*
+		 * Retourne la trace d'une nouvelle resolution par l'algorithme engine, ou null si l'instrumentation
+		 * est desactivee (les algorithmes ne mesurent alors rien).
+		 */
+		SearchStats stats = _instance;
+		return stats==null ? null : new Search(stats, engine);
+	}
+
+	public static Search lastSearch() {
+		/*
+		 * Retourne la trace de la derniere resolution terminee, ou null si aucune.
+		 */
+		SearchStats stats = _instance;
+		return stats==null ? null : stats._lastSearch;
+	}
+
+	public String totals() {
+		/*
+		 * Retourne le resume des compteurs cumules sur toutes les resolutions.
+		 */
+		return String.format("Statistiques : %d resolution(s), %d niveau(x), %d Parking(s) developpe(s), "
+				+ "%d deplacement(s) genere(s) dont %d doublon(s), %d ms", getSearches(), getLevels(),
+				getNodesExpanded(), getChildrenGenerated(), getDuplicatesRejected(), getSearchMillis());
+	}
+
+	//COMPTEURS JMX
+	public long getSearches() { return _searches.sum(); }
+	public long getLevels() { return _levels.sum(); }
+	public long getNodesExpanded() { return _expanded.sum(); }
+	public long getChildrenGenerated() { return _generated.sum(); }
+	public long getDuplicatesRejected() { return _duplicates.sum(); }
+	public long getSearchMillis() { return _nanos.sum() / 1000000; }
+	public int getCurrentLevel() { return _currentLevel; }
+	public long getCurrentFrontier() { return _currentFrontier; }
+	public long getCurrentVisited() { return _currentVisited; }
+
+	public static final class Search {
+		static final int FRONTIER = 0, EXPANDED = 1, GENERATED = 2, DUPLICATES = 3, VISITED = 4, NANOS = 5; //Mesures d'un niveau
+
+		final SearchStats _stats; //Compteurs cumules
+		final String _engine; //Algorithme de recherche
+		final ArrayList<long[]> _levels = new ArrayList<long[]>(); //Mesures de chaque niveau parcouru
+		long _levelStart; //Debut du niveau en cours (System.nanoTime)
+		LevelEvent _event; //Evenement JFR du niveau en cours
+		boolean _solved; //Solution trouvee
+
+		Search(SearchStats stats, String engine) {
+			_stats = stats;
+			_engine = engine;
+		}
+
+		public void beginLevel() {
+			/*
+			 * Marque le debut d'un niveau.
+			 */
+			_event = new LevelEvent();
+			_event.begin();
+			_levelStart = System.nanoTime();
+		}
+
+		public void endLevel(long frontier, long expanded, long generated, long duplicates, long visited) {
+			/*
+			 * Retient les mesures du niveau en cours: taille du niveau, Parkings developpes, deplacements
+			 * generes, doublons rejetes et Parkings generes depuis le debut de la resolution.
+			 */
+			long nanos = System.nanoTime() - _levelStart;
+			_levels.add(new long[] {frontier, expanded, generated, duplicates, visited, nanos});
+			_stats._levels.increment();
+			_stats._expanded.add(expanded);
+			_stats._generated.add(generated);
+			_stats._duplicates.add(duplicates);
+			_stats._nanos.add(nanos);
+			_stats._currentLevel = _levels.size();
+			_stats._currentFrontier = frontier;
+			_stats._currentVisited = visited;
+
+			_event.end();
+			if (_event.shouldCommit()) {
+				_event.engine = _engine;
+				_event.level = _levels.size();
+				_event.frontier = frontier;
+				_event.expanded = expanded;
+				_event.generated = generated;
+				_event.duplicates = duplicates;
+				_event.visited = visited;
+				_event.commit();
+			}
+			_event = null;
+		}
+
+		public void end(boolean solved) {
+			/*
+			 * Marque la fin de la resolution, qui a trouve une solution si solved vaut true.
+			 */
+			_solved = solved;
+			_stats._searches.increment();
+			_stats._lastSearch = this;
+		}
+
+		public String summary() {
+			/*
+			 * Retourne le tableau des mesures de chaque niveau, suivi de leurs totaux.
+			 */
+			StringBuilder summary = new StringBuilder();
+			summary.append(String.format("Statistiques (%s, %s) :%n", _engine, _solved ? "solution trouvee" : "aucune solution"));
+			summary.append(String.format("%7s %10s %10s %10s %10s %10s %10s%n", "niveau", "frontiere",
+					"developpes", "generes", "doublons", "visites", "ms"));
+			long[] totals = new long[NANOS+1];
+			for (int level=0; level<_levels.size(); level++) {
+				long[] measures = _levels.get(level);
+				summary.append(String.format("%7d %10d %10d %10d %10d %10d %10.3f%n", level+1, measures[FRONTIER],
+						measures[EXPANDED], measures[GENERATED], measures[DUPLICATES], measures[VISITED],
+						measures[NANOS] / 1e6));
+				for (int i=0; i<totals.length; i++) totals[i] += measures[i];
+			}
+			long visited = _levels.isEmpty() ? 0 : _levels.get(_levels.size()-1)[VISITED];
+			summary.append(String.format("%7s %10s %10d %10d %10d %10d %10.3f%n", "total", "", totals[EXPANDED],
+					totals[GENERATED], totals[DUPLICATES], visited, totals[NANOS] / 1e6));
+			return summary.toString();
+		}
+	}
+
+	@Name("unblockme.SearchLevel")
+	@Label("Search Level")
+	@Category("UnblockMe")
+	static final class LevelEvent extends Event {
+		@Label("Engine") String engine; //Algorithme de recherche
+		@Label("Level") int level; //Numero du niveau
+		@Label("Frontier") long frontier; //Taille du niveau
+		@Label("Expanded") long expanded; //Parkings developpes
+		@Label("Generated") long generated; //Deplacements generes
+		@Label("Duplicates") long duplicates; //Deplacements menant a un Parking deja genere
+		@Label("Visited") long visited; //Parkings generes depuis le debut de la resolution
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * Compteurs de recherche exposes par JMX (objet "UnblockMe:type=SearchStats"), cumules sur toutes les
+ * resolutions depuis l'activation de l'instrumentation, et etat de la resolution en cours
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public interface SearchStatsMXBean {
+	long getSearches(); //Resolutions terminees
+	long getLevels(); //Niveaux parcourus
+	long getNodesExpanded(); //Parkings developpes
+	long getChildrenGenerated(); //Deplacements possibles a partir des Parkings developpes
+	long getDuplicatesRejected(); //Deplacements menant a un Parking deja genere
+	long getSearchMillis(); //Temps passe dans les niveaux
+	int getCurrentLevel(); //Dernier niveau parcouru
+	long getCurrentFrontier(); //Taille du dernier niveau parcouru
+	long getCurrentVisited(); //Parkings generes par la derniere resolution
+}
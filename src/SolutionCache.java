@@ -0,0 +1,248 @@
+/**
+ * Cache des solutions deja calculees, indexe par une forme canonique du probleme (dimensions, sortie,
+ * mesure des deplacements et voitures triees, la Goal Car restant la premiere), de sorte que la
+ * numerotation des voitures n'importe pas. Un premier niveau en memoire retient les solutions les plus
+ * recemment utilisees, un second niveau les conserve toutes dans un fichier en ajout seul, indexe par un
+ * CacheIndex projete en memoire. Les resolutions des solutions absentes se deroulent hors du verrou du
+ * cache: plusieurs threads peuvent le partager
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.BufferedInputStream; //lecture des enregistrements non indexes
+import java.io.DataInputStream; //lecture des enregistrements
+import java.io.EOFException; //fin (eventuellement tronquee) du fichier
+import java.io.File; //fichier du cache
+import java.io.FileInputStream; //lecture des enregistrements non indexes
+import java.io.IOException; //erreurs de lecture et d'ecriture
+import java.io.RandomAccessFile; //lecture des solutions et ajout en fin de fichier
+import java.util.Arrays; //tri des voitures
+import java.util.LinkedHashMap; //niveau en memoire (ordre d'utilisation)
+import java.util.Map; //entree la plus ancienne
+import java.util.function.Function; //resolution en cas d'echec
+
+public class SolutionCache {
+	static final byte[] NO_SOLUTION = new byte[0]; //Marque d'un probleme sans solution (compare par identite)
+
+	final int _capacity; //Nombre maximal de solutions en memoire
+	final LinkedHashMap<String, byte[]> _recent; //Solutions en memoire, de la moins a la plus recemment utilisee
+	final RandomAccessFile _file; //Fichier du cache (null si le cache est seulement en memoire)
+	final CacheIndex _index; //Position de chaque enregistrement du fichier (fichier voisin ".index", null sans fichier)
+	long _hits, _misses; //Nombre de solutions trouvees dans le cache, et calculees
+
+	public SolutionCache(File file, int capacity) throws IOException {
+		/*
+		 * Construit un cache retenant capacity solutions en memoire et, si file n'est pas null, toutes les
+		 * solutions dans file (cree s'il n'existe pas, complete sinon), indexees dans le fichier voisin
+		 * ".index" (complete par les enregistrements qu'il ne couvre pas encore).
+		 */
+		_capacity = capacity;
+		_recent = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > _capacity;
+			}
+		};
+		_file = file==null ? null : new RandomAccessFile(file, "rw");
+		_index = file==null ? null : new CacheIndex(new File(file.getPath() + ".index"));
+		if (_file != null) {
+			if (_index.indexedLength() > _file.length()) _index.clear(); //Index d'un autre fichier
+			long length = indexRecords(file, _index.indexedLength());
+			_file.setLength(length); //Retire un eventuel enregistrement tronque
+			_index.setIndexedLength(length);
+		}
+	}
+
+	private long indexRecords(File file, long offset) throws IOException {
+		/*
+		 * Indexe les enregistrements du fichier (cle, nombre de deplacements ou -1 si aucune solution, puis
+		 * voiture et distance de chaque deplacement) a partir de la position offset, et retourne la taille
+		 * de sa partie complete.
+		 */
+		try (FileInputStream stream = new FileInputStream(file)) {
+			stream.getChannel().position(offset); //Enregistrements deja indexes sautes
+			DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+			while (true) {
+				String key = input.readUTF();
+				int count = input.readShort();
+				input.readFully(new byte[Math.max(0, 2*count)]);
+				_index.put(key, offset);
+				offset += 2 + key.length() + 2 + Math.max(0, 2*count); //Cles ASCII: un octet par caractere
+			}
+		}
+		catch (EOFException exception) {
+			return offset; //Fin du fichier, ou enregistrement tronque ignore
+		}
+	}
+
+	public SolveResult solveParking(Parking root, Function<Parking, SolveResult> solver) throws IOException {
+		/*
+		 * Retourne la solution de root retenue dans le cache, renumerotee selon les voitures de root, ou a
+		 * defaut le resultat de solver, dont la solution (ou son absence) est alors ajoutee au cache, sauf
+		 * si la resolution a ete arretee par une de ses limites. Tous les algorithmes donnant une solution
+		 * optimale (la mesure des deplacements fait partie de la forme canonique), ils partagent les memes
+		 * solutions. La solution a la forme d'une feuille de l'arbre des deplacements.
+		 */
+		int[] carOrder = canonicalOrder(root); //Voiture de root de chaque rang canonique
+		String key = canonicalKey(root, carOrder);
+
+		byte[] moves = lookup(key);
+		if (moves == NO_SOLUTION) return new SolveResult(SolveResult.Status.UNSOLVABLE, null, 0);
+		if (moves != null) return new SolveResult(SolveResult.Status.SOLVED, replay(root, moves, carOrder), 0);
+
+		SolveResult outcome = solver.apply(root); //Hors du verrou: les autres threads continuent a lire le cache
+		if (outcome.isStopped()) return outcome; //Resolution interrompue: l'absence de solution n'est pas prouvee
+		store(key, outcome._solution==null ? NO_SOLUTION : movesTo(outcome._solution, carOrder));
+		return outcome;
+	}
+
+	private synchronized byte[] lookup(String key) throws IOException {
+		/*
+		 * Retourne les deplacements retenus pour key (NO_SOLUTION si aucune solution n'existe), ou null si
+		 * key est absente du cache, et compte le succes ou l'echec.
+		 */
+		byte[] moves = _recent.get(key);
+		if (moves == null && _index != null) {
+			long offset = _index.find(key, _file);
+			if (offset >= 0) {
+				moves = readMoves(offset);
+				_recent.put(key, moves);
+			}
+		}
+		if (moves != null) _hits++;
+		else _misses++;
+		return moves;
+	}
+
+	private synchronized void store(String key, byte[] moves) throws IOException {
+		/*
+		 * Ajoute au cache les deplacements moves de key, sauf si un autre thread l'a deja fait.
+		 */
+		if (_recent.containsKey(key) || (_index != null && _index.find(key, _file) >= 0)) return;
+		_recent.put(key, moves);
+		if (_file != null) appendMoves(key, moves);
+	}
+
+	static int[] canonicalOrder(Parking root) {
+		/*
+		 * Retourne les voitures de root dans l'ordre canonique: la Goal Car, puis les autres triees par
+		 * orientation, rangee et position (deux voitures ne pouvant occuper la meme position).
+		 */
+		SolverContext context = root.getContext();
+		Integer[] cars = new Integer[context._carsCount];
+		for (int carIndex=0; carIndex<cars.length; carIndex++) cars[carIndex] = carIndex;
+		Arrays.sort(cars, 1, cars.length, (a, b) -> {
+			if (context._carOrientations[a] != context._carOrientations[b]) return context._carOrientations[a] ? -1 : 1;
+			if (context._carRanges[a] != context._carRanges[b]) return Integer.compare(context._carRanges[a], context._carRanges[b]);
+			return Integer.compare(root._carPositions[a], root._carPositions[b]);
+		});
+		int[] carOrder = new int[cars.length];
+		for (int rank=0; rank<cars.length; rank++) carOrder[rank] = cars[rank];
+		return carOrder;
+	}
+
+	static String canonicalKey(Parking root, int[] carOrder) {
+		/*
+		 * Retourne la forme canonique de root: dimensions, sortie, mesure des deplacements, murs, puis
+		 * orientation, rangee, taille et position des voitures dans l'ordre carOrder.
+		 */
+		SolverContext context = root.getContext();
+		StringBuilder key = new StringBuilder();
+		key.append(context._width).append('x').append(context._height);
+		key.append(':').append(context._exitX).append(',').append(context._exitY);
+		key.append(context._slideMoves ? ":slide" : ":step");
+		for (int cell=0; cell<context._width*context._height; cell++) {
+			if (SolverContext.isSet(context._walls, cell)) key.append(":#").append(cell); //Murs (aucun: cle inchangee)
+		}
+		for (int carIndex : carOrder) {
+			key.append(':').append(context._carOrientations[carIndex] ? 'H' : 'V');
+			key.append(context._carRanges[carIndex]).append(',').append(context._carSizes[carIndex]);
+			key.append(',').append(root._carPositions[carIndex]);
+		}
+		return key.toString();
+	}
+
+	static byte[] movesTo(Parking solution, int[] carOrder) {
+		/*
+		 * Retourne les deplacements (rang canonique de la voiture, puis distance) menant de la racine a
+		 * la feuille solution.
+		 */
+		int[] ranks = new int[carOrder.length]; //Rang canonique de chaque voiture
+		for (int rank=0; rank<carOrder.length; rank++) ranks[carOrder[rank]] = rank;
+		int count = 0;
+		for (Parking step=solution; step.getParentParking()!=null; step=step.getParentParking()) count++;
+
+		byte[] moves = new byte[2*count];
+		for (Parking step=solution; step.getParentParking()!=null; step=step.getParentParking()) {
+			int carIndex = step.getParentMove().getMovedCar();
+			count -= 1;
+			moves[2*count] = (byte) ranks[carIndex];
+			moves[2*count+1] = (byte) (step._carPositions[carIndex] - step.getParentParking()._carPositions[carIndex]);
+		}
+		return moves;
+	}
+
+	static Parking replay(Parking root, byte[] moves, int[] carOrder) {
+		/*
+		 * Rejoue a partir de root les deplacements moves, dont les voitures sont donnees par leur rang
+		 * canonique, et retourne la feuille obtenue.
+		 */
+		Parking step = root;
+		for (int i=0; i<moves.length; i+=2) {
+			int carIndex = carOrder[moves[i]];
+			int move = moves[i+1];
+			Parking nextStep = step.newChild(carIndex, move, step.childKey(carIndex, move));
+			new Move(step, nextStep, carIndex); //Mouvement reliant les Parkings
+			step = nextStep;
+		}
+		return step;
+	}
+
+	private byte[] readMoves(long offset) throws IOException {
+		/*
+		 * Lit dans le fichier les deplacements de l'enregistrement dont le nombre est a la position offset.
+		 */
+		_file.seek(offset);
+		int count = _file.readShort();
+		if (count < 0) return NO_SOLUTION;
+		byte[] moves = new byte[2*count];
+		_file.readFully(moves);
+		return moves;
+	}
+
+	private void appendMoves(String key, byte[] moves) throws IOException {
+		/*
+		 * Ajoute en fin de fichier l'enregistrement de key et moves.
+		 */
+		long offset = _file.length();
+		_file.seek(offset);
+		_file.writeUTF(key);
+		_file.writeShort(moves==NO_SOLUTION ? -1 : moves.length/2);
+		_file.write(moves);
+		_index.put(key, offset);
+		_index.setIndexedLength(_file.length());
+	}
+
+	public synchronized long hits() {
+		/*
+		 * Retourne le nombre de solutions trouvees dans le cache.
+		 */
+		return _hits;
+	}
+
+	public synchronized long misses() {
+		/*
+		 * Retourne le nombre de solutions absentes du cache, donc calculees.
+		 */
+		return _misses;
+	}
+
+	public synchronized void close() throws IOException {
+		/*
+		 * Ferme le fichier du cache et son index.
+		 */
+		if (_file != null) {
+			_file.close();
+			_index.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Resultat d'une resolution bornee (Escape.solve): la solution si elle a ete trouvee, sinon la raison
+ * de son absence (aucune solution n'existe, ou la resolution a ete arretee par une de ses limites),
+ * ainsi que le nombre de Parkings indexes par la resolution
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class SolveResult {
+
+	enum Status {
+		SOLVED, //Solution trouvee
+		UNSOLVABLE, //Tous les Parkings atteignables ont ete parcourus: aucune solution n'existe
+		TIMED_OUT, //Echeance atteinte
+		CANCELLED, //Jeton annule ou thread interrompu
+		OVER_BUDGET //Nombre maximal de Parkings indexes depasse
+	}
+
+	final Status _status; //Issue de la resolution
+	final Parking _solution; //Feuille de l'arbre des deplacements (null si non resolu)
+	final int _visited; //Parkings indexes par la resolution
+
+	SolveResult(Status status, Parking solution, int visited) {
+		_status = status;
+		_solution = solution;
+		_visited = visited;
+	}
+
+	public boolean isSolved() {
+		/*
+		 * Retourne true si une solution a ete trouvee.
+		 */
+		return _status == Status.SOLVED;
+	}
+
+	public boolean isStopped() {
+		/*
+		 * Retourne true si la resolution a ete arretee avant d'avoir trouve une solution ou prouve qu'il
+		 * n'en existe aucune.
+		 */
+		return _status != Status.SOLVED && _status != Status.UNSOLVABLE;
+	}
+
+	public String stopMessage(long timeoutMillis) {
+		/*
+		 * Retourne la raison de l'arret de la resolution, limitee a timeoutMillis millisecondes, ou null
+		 * si elle n'a pas ete arretee.
+		 */
+		switch (_status) {
+			case TIMED_OUT: return String.format("abandonne apres %d ms", timeoutMillis);
+			case CANCELLED: return "resolution annulee";
+			case OVER_BUDGET: return String.format("budget memoire depasse (%d Parkings)", _visited);
+			default: return null;
+		}
+	}
+}
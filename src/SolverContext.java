@@ -0,0 +1,390 @@
+/**
+ * Definition immuable d'un probleme de Parking (dimensions, sortie, murs et voitures), partagee par tous
+ * les noeuds de l'arbre et par tous les threads qui le resolvent. Les positions des voitures sont
+ * empaquetees dans une cle d'un mot de 64 bits si elles y tiennent, de plusieurs mots sinon (grands
+ * plateaux, nombreuses voitures)
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //voitures deplacees
+
+public class SolverContext {
+	final int _width, _height, _exitX, _exitY; //Largeur, Hauteur, Colonne puis Ligne de la sortie
+	final boolean _exitInFront; //Retient si la sortie est a l'avant ou a l'arriere de la Goal Car
+
+	final int _carsCount; //Nombre de voitures
+	final boolean[] _carOrientations; //true si voiture d'index i est horizontale, false si verticale
+	final int[] _carRanges; //Index de ligne (si horizontale) ou colonne (si verticale) des voitures
+	final int[] _carSizes; //Tailles des voitures
+	final int _bitsPerCar; //Nombre de bits de la cle reserves a la position de chaque voiture
+	final int _keyWords; //Nombre de mots de 64 bits de la cle (1 si elle tient dans un long)
+	final int[] _carWords; //Mot de la cle contenant la position de chaque voiture
+	final int[] _carShifts; //Rang du premier bit de la position de chaque voiture dans son mot
+	final boolean _slideMoves; //true si un deplacement est un glissement, false s'il est d'une position
+
+	//PLATEAU EN BITS (case (x,y) = bit y*_width+x, reparti sur _words mots de 64 bits)
+	final int _words; //Nombre de mots d'un masque du plateau
+	final long[] _walls; //Masque des murs (cases fixes n'appartenant a aucune voiture)
+	final int[] _laneLengths; //Nombre de cases de la rangee de chaque voiture
+	final int[][] _laneCells; //Case du plateau de chaque position de la rangee de chaque voiture
+	final long[][] _carMasks; //Masque des cases occupees par chaque voiture, pour chacune de ses positions
+	final long[] _exitMasks; //Masque des cases entre la Goal Car et la sortie, pour chaque position de la Goal Car
+	final int[] _movingCars; //Voitures deplacees par la recherche (les autres restent immobiles), par index croissant
+	final long[] _followingCars; //Masque des voitures pouvant etre deplacees apres chaque voiture (chemins canoniques)
+
+	public SolverContext(int width, int height, int exitX, int exitY, int[][] carCoordinates) {
+		/*
+		 * Construit la definition du probleme sans mur (voir le constructeur suivant).
+		 */
+		this(width, height, exitX, exitY, carCoordinates, new int[0]);
+	}
+
+	public SolverContext(int width, int height, int exitX, int exitY, int[][] carCoordinates, int[] wallCells) {
+		/*
+		 * Construit la definition du probleme a partir des dimensions, de la sortie, des coordonnees
+		 * des voitures au format [backY, backX, frontY, frontX] et des cases des murs (y*largeur+x). Les
+		 * positions de depart ne servent qu'a situer les voitures immobiles (voir sweptCells).
+		 */
+		_width = width; //Largeur et hauteur
+		_height = height;
+		_exitX = exitX; //Coordonnees de la sortie (adjacente mais hors du parking)
+		_exitY = exitY;
+		_carsCount = carCoordinates.length; //Nb. de voitures
+
+		_carOrientations = new boolean[_carsCount];
+		_carRanges = new int[_carsCount];
+		_carSizes = new int[_carsCount];
+
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			int[] coords = carCoordinates[carIndex];
+
+			if (coords[0]==coords[2]) {	//backY==frontY donc Voiture...
+				_carOrientations[carIndex] = true;		//Horizontale
+				_carRanges[carIndex] = coords[0];		//Appartient a ligne backY
+				_carSizes[carIndex] = coords[3] - coords[1]; //De taille frontX-backX
+			}
+			else {						//Voiture...
+				_carOrientations[carIndex] = false;		//Verticale
+				_carRanges[carIndex] = coords[1];		//Appartient a colonne backX
+				_carSizes[carIndex] = coords[2] - coords[0]; //De taille frontY - backY
+			}
+		}
+
+		//Position de la sortie vis a vis du Goal Car
+		if (_carOrientations[0]) {	//Si le Goal car est horizontal
+			_exitInFront = exitX!=-1; //La sortie est devant si elle n'est pas en debut de ligne
+		}
+		else {						//Si le Goal car est vertical
+			_exitInFront = exitY!=-1; //La sortie est devant si elle n'est pas en haut de colonne
+		}
+
+		//Bits necessaires pour coder la plus grande position possible d'une voiture
+		_bitsPerCar = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(width, height) - 1));
+		_slideMoves = false; //Deplacements d'une position par defaut
+
+		//Place de chaque voiture dans la cle: aucune position n'est a cheval sur deux mots
+		int carsPerWord = Long.SIZE / _bitsPerCar;
+		_keyWords = Math.max(1, (_carsCount + carsPerWord-1) / carsPerWord);
+		_carWords = new int[_carsCount];
+		_carShifts = new int[_carsCount];
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			_carWords[carIndex] = carIndex / carsPerWord;
+			_carShifts[carIndex] = (carIndex % carsPerWord) * _bitsPerCar;
+		}
+
+		//Masques des voitures pour chacune de leurs positions
+		_words = (width*height + Long.SIZE-1) / Long.SIZE;
+		_walls = new long[_words];
+		for (int cell : wallCells) setBit(_walls, 0, cell);
+		_laneLengths = new int[_carsCount];
+		_laneCells = new int[_carsCount][];
+		_carMasks = new long[_carsCount][];
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			int laneLength = _carOrientations[carIndex] ? width : height;
+			_laneLengths[carIndex] = laneLength;
+			_laneCells[carIndex] = new int[laneLength];
+			for (int lanePosition=0; lanePosition<laneLength; lanePosition++) {
+				_laneCells[carIndex][lanePosition] = _carOrientations[carIndex]
+						? _carRanges[carIndex]*width + lanePosition	//Ligne fixe, colonne variable
+						: lanePosition*width + _carRanges[carIndex];	//Colonne fixe, ligne variable
+			}
+			int positionsCount = Math.max(0, laneLength - _carSizes[carIndex]);
+			_carMasks[carIndex] = new long[positionsCount*_words];
+			for (int position=0; position<positionsCount; position++) {
+				for (int offset=0; offset<=_carSizes[carIndex]; offset++) {
+					setBit(_carMasks[carIndex], position*_words, _laneCells[carIndex][position+offset]);
+				}
+			}
+		}
+
+		//Masques de la sortie: cases de la rangee de la Goal Car entre son avant (ou arriere) et la sortie
+		int goalPositions = Math.max(0, _laneLengths[0] - _carSizes[0]);
+		_exitMasks = new long[goalPositions*_words];
+		for (int position=0; position<goalPositions; position++) {
+			int from = _exitInFront ? position+_carSizes[0]+1 : 0;
+			int to = _exitInFront ? _laneLengths[0] : position;
+			for (int lanePosition=from; lanePosition<to; lanePosition++) {
+				setBit(_exitMasks, position*_words, _laneCells[0][lanePosition]);
+			}
+		}
+		long[][] sweptCells = sweptCells(carPositions(carCoordinates));
+		_movingCars = relevantCars(sweptCells);
+		_followingCars = followingCars(sweptCells);
+	}
+
+	boolean isMovable(int carIndex) {
+		/*
+		 * Retourne true si la voiture carIndex a au moins deux positions (elle ne remplit pas sa rangee).
+		 */
+		return _laneLengths[carIndex] - _carSizes[carIndex] > 1;
+	}
+
+	private long[][] sweptCells(int[] carPositions) {
+		/*
+		 * Retourne le masque des cases que chaque voiture peut occuper, pour les positions de depart
+		 * carPositions. Une voiture remplissant sa rangee ne bouge jamais: ses cases sont fixes, comme les
+		 * murs. Chaque autre voiture ne peut balayer que les cases de sa rangee situees de part et d'autre
+		 * de sa position sans case fixe intermediaire.
+		 */
+		long[] fixedCells = _walls.clone(); //Murs et cases des voitures immobiles
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			if (isMovable(carIndex)) continue;
+			for (int offset=0; offset<=_carSizes[carIndex]; offset++) {
+				setBit(fixedCells, 0, _laneCells[carIndex][carPositions[carIndex]+offset]);
+			}
+		}
+
+		long[][] sweptCells = new long[_carsCount][_words];
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			int[] laneCells = _laneCells[carIndex];
+			int from = carPositions[carIndex], to = from+_carSizes[carIndex];
+			while (isMovable(carIndex) && from > 0 && !isSet(fixedCells, laneCells[from-1])) from--;
+			while (isMovable(carIndex) && to < laneCells.length-1 && !isSet(fixedCells, laneCells[to+1])) to++;
+			for (int lanePosition=from; lanePosition<=to; lanePosition++) setBit(sweptCells[carIndex], 0, laneCells[lanePosition]);
+		}
+		return sweptCells;
+	}
+
+	private int[] relevantCars(long[][] sweptCells) {
+		/*
+		 * Retourne les voitures pouvant influer sur la sortie de la Goal Car. En partant de la Goal Car,
+		 * on retient les voitures dont les cases balayees (sweptCells) croisent celles d'une voiture deja
+		 * retenue, jusqu'a ce que l'ensemble ne change plus. Les autres voitures n'occupent jamais une case
+		 * dont une voiture retenue a besoin: les deplacer n'allonge ni ne raccourcit aucune solution, elles
+		 * restent donc immobiles (de meme que les voitures remplissant leur rangee).
+		 */
+		boolean[] relevant = new boolean[_carsCount];
+		long[] neededCells = new long[_words]; //Cases balayees par les voitures retenues et mobiles
+		relevant[0] = true;
+		for (boolean changed=true; changed; ) {
+			changed = false;
+			for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+				if (!relevant[carIndex] || !isMovable(carIndex)) continue;
+				for (int word=0; word<_words; word++) neededCells[word] |= sweptCells[carIndex][word];
+			}
+			for (int carIndex=1; carIndex<_carsCount; carIndex++) {
+				if (relevant[carIndex]) continue;
+				if (intersect(sweptCells[carIndex], neededCells)) {
+					relevant[carIndex] = true;
+					changed = true;
+				}
+			}
+		}
+
+		int[] movingCars = new int[_carsCount];
+		int count = 0;
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			if (relevant[carIndex] && isMovable(carIndex)) movingCars[count++] = carIndex;
+		}
+		return Arrays.copyOf(movingCars, count);
+	}
+
+	private long[] followingCars(long[][] sweptCells) {
+		/*
+		 * Retourne, pour chaque voiture a, le masque des voitures b dont un deplacement peut suivre un
+		 * deplacement de a dans un chemin canonique. Deux voitures dont les cases balayees sont disjointes
+		 * ne se genent jamais: leurs deplacements commutent, et "a puis b" mene au meme Parking que
+		 * "b puis a", en autant de deplacements. Seul l'ordre ou la voiture de plus petit index est
+		 * deplacee en premier est conserve: b peut suivre a si b >= a ou si leurs cases se croisent.
+		 * Le plus petit chemin (dans l'ordre de generation) menant a chaque Parking est canonique.
+		 */
+		long[] followingCars = new long[_carsCount];
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			if (_carsCount > Long.SIZE) { //Trop de voitures pour les masques (et pour la cle): aucune reduction
+				followingCars[carIndex] = -1L;
+				continue;
+			}
+			for (int other=0; other<_carsCount; other++) {
+				if (other >= carIndex || intersect(sweptCells[carIndex], sweptCells[other])) followingCars[carIndex] |= 1L << other;
+			}
+		}
+		return followingCars;
+	}
+
+	boolean wallBetween(int carIndex, int from, int to) {
+		/*
+		 * Retourne true si un mur occupe l'une des positions from a to (incluses) de la rangee de la
+		 * voiture carIndex.
+		 */
+		for (int lanePosition=from; lanePosition<=to; lanePosition++) {
+			if (isSet(_walls, _laneCells[carIndex][lanePosition])) return true;
+		}
+		return false;
+	}
+
+	boolean hasWalls() {
+		/*
+		 * Retourne true si le plateau comporte au moins un mur.
+		 */
+		for (long word : _walls) {
+			if (word != 0) return true;
+		}
+		return false;
+	}
+
+	private boolean intersect(long[] mask, long[] other) {
+		/*
+		 * Retourne true si les masques du plateau mask et other ont une case en commun.
+		 */
+		for (int word=0; word<_words; word++) {
+			if ((mask[word] & other[word]) != 0) return true;
+		}
+		return false;
+	}
+
+	static void setBit(long[] mask, int offset, int cell) {
+		/*
+		 * Met a 1 le bit de la case cell dans le masque commencant a l'index offset de mask.
+		 */
+		mask[offset + (cell >>> 6)] |= 1L << cell;
+	}
+
+	static boolean isSet(long[] mask, int cell) {
+		/*
+		 * Retourne true si le bit de la case cell est a 1 dans mask.
+		 */
+		return (mask[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	private SolverContext(SolverContext other, boolean slideMoves) {
+		/*
+		 * Construit une copie de other dont seule la mesure des deplacements change.
+		 */
+		_width = other._width;
+		_height = other._height;
+		_exitX = other._exitX;
+		_exitY = other._exitY;
+		_exitInFront = other._exitInFront;
+		_carsCount = other._carsCount;
+		_carOrientations = other._carOrientations; //Tableaux jamais modifies: partages
+		_carRanges = other._carRanges;
+		_carSizes = other._carSizes;
+		_bitsPerCar = other._bitsPerCar;
+		_keyWords = other._keyWords;
+		_carWords = other._carWords;
+		_carShifts = other._carShifts;
+		_slideMoves = slideMoves;
+		_words = other._words;
+		_walls = other._walls;
+		_laneLengths = other._laneLengths;
+		_laneCells = other._laneCells;
+		_carMasks = other._carMasks;
+		_exitMasks = other._exitMasks;
+		_movingCars = other._movingCars;
+		_followingCars = other._followingCars;
+	}
+
+	public SolverContext withSlideMoves(boolean slideMoves) {
+		/*
+		 * Retourne le meme probleme, ou un deplacement est un glissement d'une voiture sur autant de
+		 * positions libres que voulu (slideMoves a true) ou un deplacement d'une seule position (false).
+		 */
+		if (slideMoves == _slideMoves) return this;
+		return new SolverContext(this, slideMoves);
+	}
+
+	public int[] carPositions(int[][] carCoordinates) {
+		/*
+		 * Retourne la position de l'arriere de chaque voiture dans sa rangee (a partir de la gauche si
+		 * horizontale, a partir d'en haut si verticale), pour des coordonnees au format du constructeur.
+		 */
+		int[] carPositions = new int[_carsCount];
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			int[] coords = carCoordinates[carIndex];
+			carPositions[carIndex] = _carOrientations[carIndex] ? coords[1] : coords[0]; //backX ou backY
+		}
+		return carPositions;
+	}
+
+	public long packPositions(int[] carPositions) {
+		/*
+		 * Retourne la cle empaquetant les positions carPositions, la voiture i occupant les bits
+		 * [i*_bitsPerCar, (i+1)*_bitsPerCar[ (la Goal Car occupe donc les bits de poids faible).
+		 * Si la cle compte plusieurs mots, seul le premier est retourne.
+		 */
+		long key = 0;
+		for (int carIndex=0; carIndex<_carsCount && _carWords[carIndex]==0; carIndex++) {
+			key |= (long) carPositions[carIndex] << _carShifts[carIndex];
+		}
+		return key;
+	}
+
+	public long[] packPositions(int[] carPositions, long[] key) {
+		/*
+		 * Ecrit dans key les _keyWords mots de la cle empaquetant les positions carPositions (la voiture i
+		 * occupant les bits _carShifts[i] et suivants du mot _carWords[i]), et le retourne.
+		 */
+		for (int word=0; word<_keyWords; word++) key[word] = 0;
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			key[_carWords[carIndex]] |= (long) carPositions[carIndex] << _carShifts[carIndex];
+		}
+		return key;
+	}
+
+	public int[] unpackPositions(long key) {
+		/*
+		 * Retourne les positions des voitures empaquetees dans key (inverse de packPositions).
+		 */
+		return unpackPositions(key, new int[_carsCount]);
+	}
+
+	public int[] unpackPositions(long key, int[] carPositions) {
+		/*
+		 * Ecrit dans carPositions les positions des voitures empaquetees dans key, et le retourne.
+		 */
+		long positionMask = (1L << _bitsPerCar) - 1;
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			carPositions[carIndex] = (int) ((key >>> _carShifts[carIndex]) & positionMask);
+		}
+		return carPositions;
+	}
+
+	public int[] unpackPositions(long[] keys, int offset, int[] carPositions) {
+		/*
+		 * Ecrit dans carPositions les positions des voitures empaquetees dans la cle de plusieurs mots
+		 * commencant a l'index offset de keys, et le retourne.
+		 */
+		long positionMask = (1L << _bitsPerCar) - 1;
+		for (int carIndex=0; carIndex<_carsCount; carIndex++) {
+			carPositions[carIndex] = (int) ((keys[offset+_carWords[carIndex]] >>> _carShifts[carIndex]) & positionMask);
+		}
+		return carPositions;
+	}
+
+	public int exitGoalPosition() {
+		/*
+		 * Retourne la position de la Goal Car lorsqu'elle est devant la sortie.
+		 */
+		if (!_exitInFront) return 0; //Sortie vers l'arriere
+		if (_carOrientations[0]) return _exitX-_carSizes[0]-1; //Selon largeur
+		return _exitY-_carSizes[0]-1; //Selon hauteur
+	}
+
+	public boolean fitsKey() {
+		/*
+		 * Retourne true si les positions de toutes les voitures tiennent dans une cle de 64 bits.
+		 */
+		return _keyWords == 1;
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Tampons de travail d'une resolution (masque d'occupation, ensemble des Parkings generes, arbre des
+ * deplacements, niveaux du parcours), propres a un thread et reutilises d'une resolution a l'autre.
+ * Lorsque l'espace des dispositions atteignables tient dans un StateBitmap, le parcours en largeur y
+ * retient les Parkings generes (un bit par rang de _ranking) plutot que dans l'ensemble _allParkings
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class SolverScratch {
+	static final int RETAINED_CAPACITY = 1 << 20; //Taille de table conservee entre deux resolutions
+	static final int STOP_CHECK = 1 << 10; //Appels de stopped entre deux verifications des limites
+	static final int BYTES_PER_PARKING = 96; //Memoire approximative d'un Parking indexe (ensemble, arbre, niveaux)
+
+	//Tampons du thread courant, crees au premier appel de acquire
+	static final ThreadLocal<SolverScratch> _threadScratch = ThreadLocal.withInitial(SolverScratch::new);
+
+	SolverContext _context; //Probleme en cours de resolution
+	long[] _occupancy = new long[0]; //Masque du parking: bit a 1 si case occupee, 0 sinon
+	int _exitSpotsBlocked; //Compteur des spots bloques entre la Goal Car et la sortie
+	long[] _childKeys = new long[0]; //Cles des enfants du dernier Parking developpe
+	int[] _childCars = new int[0]; //Voiture deplacee pour obtenir chaque enfant
+	int[] _childMoves = new int[0]; //Deplacement (en positions) de cette voiture
+	int _goalFreedBy; //Index de l'enfant liberant la Goal Car, -1 si aucun
+	long _childrenGenerated; //Deplacements generes par addNextParkings depuis le debut de la resolution
+	LongHashSet _allParkings = new LongHashSet(); //Cles empaquetees des parkings deja generes
+	StateRanking _ranking; //Numerotation des dispositions de la resolution en cours (null: Parkings generes dans _allParkings)
+	StateBitmap _visitedBits; //Rangs des Parkings generes (cree a la premiere resolution qui en a besoin, conserve ensuite)
+	PathStore _paths = new PathStore(); //Parent et deplacement de chaque Parking genere
+	PathStore _goalPaths = new PathStore(); //Arbre de la recherche partant des dispositions finales (BidirectionalSolver)
+	TranspositionTable _transpositions; //Table de la recherche IDA* (creee a sa premiere resolution)
+	WideKeySet _wideParkings; //Cles de plusieurs mots des Parkings generes (creees a la premiere resolution qui en a besoin)
+	Frontier _level = new Frontier(); //Niveau en cours de parcours
+	Frontier _nextLevel = new Frontier(); //Niveau suivant
+	int _enumerated; //Dispositions enumerees par DistanceTable.build, comptees dans le budget memoire
+	int _maxPaths = Integer.MAX_VALUE; //Budget memoire des resolutions du thread: nombre maximal de Parkings indexes
+	long _deadline; //Echeance des resolutions du thread (System.nanoTime), 0: aucune
+	CancellationToken _cancellation; //Jeton d'annulation des resolutions du thread (null: aucun)
+	SolveResult.Status _stopReason; //Limite ayant arrete la resolution en cours (null: aucune)
+	int _stopChecks; //Appels de stopped depuis la derniere verification des limites
+
+	public static int maxPathsFor(long budgetBytes) {
+		/*
+		 * Retourne le nombre maximal de Parkings indexes tenant dans budgetBytes octets (0: aucune limite).
+		 */
+		return budgetBytes == 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, budgetBytes / BYTES_PER_PARKING);
+	}
+
+	public static SolverScratch acquire(SolverContext context) {
+		/*
+		 * Retourne les tampons du thread courant, remis a zero pour resoudre le probleme context.
+		 */
+		SolverScratch scratch = _threadScratch.get();
+		scratch.reset(context);
+		return scratch;
+	}
+
+	public static SolverScratch acquireForExpansion(SolverContext context) {
+		/*
+		 * Retourne les tampons du thread courant prets a developper des Parkings de context, sans vider
+		 * l'ensemble des Parkings ni les niveaux (inutilises lorsque la recherche est partagee entre threads).
+		 */
+		SolverScratch scratch = _threadScratch.get();
+		if (scratch._context != context) scratch.prepare(context);
+		return scratch;
+	}
+
+	public void reset(SolverContext context) {
+		/*
+		 * Prepare les tampons pour une nouvelle resolution de context, en ne reallouant que ce qui est
+		 * trop petit (ou, pour l'ensemble des Parkings, l'arbre et les niveaux, devenu trop grand pour etre
+		 * conserve).
+		 * L'arbre des deplacements est vide par la racine de la resolution (PathStore.reset).
+		 */
+		prepare(context);
+		_stopReason = null;
+		_stopChecks = 0;
+		if (_allParkings.capacity() > RETAINED_CAPACITY) _allParkings = new LongHashSet();
+		else _allParkings.clear();
+		_ranking = null;
+		if (_visitedBits != null) _visitedBits.clear(); //Taille bornee par StateBitmap._maxMegabytes
+		_childrenGenerated = 0;
+		_enumerated = 0;
+		if (_paths.capacity() > RETAINED_CAPACITY) _paths = new PathStore();
+		if (_goalPaths.capacity() > RETAINED_CAPACITY) _goalPaths = new PathStore();
+		_goalPaths.clear(context);
+		if (_level.capacity() > RETAINED_CAPACITY) _level = new Frontier();
+		else _level.clear();
+		if (_nextLevel.capacity() > RETAINED_CAPACITY) _nextLevel = new Frontier();
+		else _nextLevel.clear();
+	}
+
+	public boolean rankStates(Parking root) {
+		/*
+		 * Numerote les dispositions atteignables a partir de root (StateRanking) et prepare _visitedBits
+		 * pour les retenir, si leur cle tient dans un mot et si l'ensemble ne depasse pas la taille
+		 * maximale (StateBitmap.maxBytes): sa taille est connue avant la recherche. Retourne false sinon,
+		 * les Parkings generes etant alors retenus dans _allParkings.
+		 */
+		if (!root.getContext().fitsKey()) return false;
+		StateRanking ranking = new StateRanking(root);
+		long bytes = ranking.bitmapBytes();
+		if (bytes > StateBitmap.maxBytes()) return false;
+		if (_visitedBits == null || _visitedBits.capacity() < ranking._size) {
+			long grownBytes = _visitedBits == null ? 0 : _visitedBits.capacity() / Byte.SIZE * 2; //Double a chaque agrandissement
+			_visitedBits = null; //L'ancien ensemble peut etre libere avant l'allocation
+			_visitedBits = new StateBitmap(Math.min(StateBitmap.maxBytes(), Math.max(bytes, grownBytes)));
+		}
+		_ranking = ranking;
+		return true;
+	}
+
+	public boolean visit(long key) {
+		/*
+		 * Retient le Parking de cle key parmi les Parkings generes. Retourne true s'il est nouveau.
+		 */
+		return _ranking != null ? _visitedBits.add(_ranking.rank(key)) : _allParkings.add(key);
+	}
+
+	public long visitedCount() {
+		/*
+		 * Retourne le nombre de Parkings generes depuis le debut de la resolution.
+		 */
+		return _ranking != null ? _visitedBits.size() : _allParkings.size();
+	}
+
+	private void prepare(SolverContext context) {
+		/*
+		 * Dimensionne le masque d'occupation et les tampons d'enfants pour developper des Parkings de context.
+		 */
+		_context = context;
+		if (_occupancy.length < context._words) _occupancy = new long[context._words];
+		_exitSpotsBlocked = 0;
+
+		//Chaque voiture avance ou recule (d'au plus toute la longueur de sa rangee)
+		int maxChildren = 2*context._carsCount*(context._slideMoves ? Math.max(context._width, context._height) : 1);
+		if (_childKeys.length < maxChildren) {
+			_childKeys = new long[maxChildren];
+			_childCars = new int[maxChildren];
+			_childMoves = new int[maxChildren];
+		}
+	}
+
+	void addChild(int child, long key, int carIndex, int move) {
+		/*
+		 * Retient l'enfant d'index child, de cle key, obtenu en deplacant carIndex de move positions.
+		 */
+		_childKeys[child] = key;
+		_childCars[child] = carIndex;
+		_childMoves[child] = move;
+	}
+
+	public int indexedCount() {
+		/*
+		 * Retourne le nombre de Parkings indexes par la resolution en cours (dans ses deux arbres de
+		 * deplacements, ou enumeres pour une table des distances).
+		 */
+		return _paths.size() + _goalPaths.size() + _enumerated;
+	}
+
+	public boolean overBudget() {
+		/*
+		 * Retourne true si la resolution en cours a indexe plus de Parkings que _maxPaths: elle doit etre
+		 * abandonnee.
+		 */
+		return indexedCount() > _maxPaths;
+	}
+
+	public boolean checkLimits() {
+		/*
+		 * Verifie les limites de la resolution en cours (thread interrompu ou jeton annule, echeance,
+		 * budget memoire) et retourne true si l'une d'elles est atteinte: elle est retenue dans _stopReason
+		 * et la resolution doit s'arreter. Appelee une fois par niveau developpe.
+		 */
+		if (_stopReason == null) {
+			if (Thread.currentThread().isInterrupted() || (_cancellation != null && _cancellation.isCancelled())) {
+				_stopReason = SolveResult.Status.CANCELLED;
+			}
+			else if (_deadline != 0 && System.nanoTime() - _deadline > 0) _stopReason = SolveResult.Status.TIMED_OUT;
+			else if (overBudget()) _stopReason = SolveResult.Status.OVER_BUDGET;
+		}
+		return _stopReason != null;
+	}
+
+	public boolean stopped() {
+		/*
+		 * Comme checkLimits, mais ne verifie les limites que tous les STOP_CHECK appels: peut etre appelee
+		 * pour chaque Parking developpe.
+		 */
+		if (++_stopChecks == STOP_CHECK) {
+			_stopChecks = 0;
+			return checkLimits();
+		}
+		return _stopReason != null;
+	}
+
+	public void swapLevels() {
+		/*
+		 * Le niveau suivant devient le niveau en cours, et l'ancien niveau est vide pour etre rempli.
+		 */
+		Frontier swap = _level;
+		_level = _nextLevel;
+		_nextLevel = swap;
+		_nextLevel.clear();
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Mode serveur: une seule JVM, deja chargee et compilee, resout les Parkings envoyes sur une socket
+ * locale (port TCP de l'interface de bouclage, ou socket du domaine Unix). Chaque connexion envoie une
+ * suite de Parkings, au format d'une ligne (une ligne par Parking) ou au format dessine des exemples
+ * (termine par une ligne vide), et recoit une ligne de resultat par Parking, dans l'ordre, sous la meme
+ * forme qu'en mode batch. Les resolutions sont confiees a un nombre borne de threads, dont les tampons
+ * restent alloues d'une requete a l'autre; les requetes en attente sont limitees (au-dela, le serveur
+ * repond qu'il est occupe), et chaque resolution est bornee en temps et en memoire
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.io.BufferedReader; //lecture des requetes
+import java.io.IOException; //erreurs de la socket ou de lecture
+import java.io.InputStreamReader; //lecture des requetes
+import java.io.PrintStream; //ecriture des resultats
+import java.net.InetAddress; //interface de bouclage
+import java.net.InetSocketAddress; //adresse TCP locale
+import java.net.SocketAddress; //adresse d'ecoute
+import java.net.StandardProtocolFamily; //socket du domaine Unix
+import java.net.UnixDomainSocketAddress; //adresse d'une socket du domaine Unix
+import java.nio.ByteBuffer; //requete a lire
+import java.nio.channels.Channels; //flux de la connexion
+import java.nio.channels.ServerSocketChannel; //socket d'ecoute
+import java.nio.channels.SocketChannel; //connexion d'un client
+import java.nio.charset.StandardCharsets; //octets des requetes
+import java.nio.file.Files; //suppression de la socket du domaine Unix
+import java.nio.file.Path; //chemin de la socket du domaine Unix
+import java.util.concurrent.ExecutorService; //threads de resolution et des connexions
+import java.util.concurrent.Executors; //creation des threads
+import java.util.concurrent.Semaphore; //requetes admises
+
+public class SolverServer {
+	static final int PENDING_PER_WORKER = 16; //Requetes admises (en cours ou en attente) par thread de resolution
+
+	final String _address; //Port TCP (chiffres seulement) ou chemin de la socket du domaine Unix
+	final boolean _slideMoves; //Mesure des deplacements
+	final BatchRunner _results; //Mise en forme des resultats, delai et budget memoire de resolution, comme en mode batch
+	final ExecutorService _solvers; //Threads de resolution (leurs tampons restent alloues)
+	final ExecutorService _connections = Executors.newCachedThreadPool(); //Un thread par connexion
+	final Semaphore _admissions; //Requetes pouvant encore etre admises
+	volatile ServerSocketChannel _channel; //Socket d'ecoute (null tant qu'elle n'est pas ouverte)
+
+	public SolverServer(String address, int workers, long timeoutMillis, String engine, boolean slideMoves,
+			String outputMode, long budgetBytes, SolutionCache cache) {
+		/*
+		 * Prepare un serveur ecoutant sur address, resolvant au plus workers Parkings a la fois par
+		 * l'algorithme engine, chacun en au plus timeoutMillis millisecondes (0: aucun delai) et
+		 * budgetBytes octets (0: aucune limite), et repondant sous la forme outputMode. Les solutions
+		 * retenues dans cache (null: aucun cache) ne sont pas recalculees.
+		 */
+		_address = address;
+		_slideMoves = slideMoves;
+		_results = new BatchRunner(workers, timeoutMillis, SolverScratch.maxPathsFor(budgetBytes), engine, slideMoves,
+				outputMode, cache, null);
+		_solvers = Executors.newFixedThreadPool(workers);
+		_admissions = new Semaphore(workers*PENDING_PER_WORKER);
+	}
+
+	public void run() throws IOException {
+		/*
+		 * Ouvre la socket d'ecoute, puis accepte les connexions jusqu'a la fermeture du serveur.
+		 */
+		boolean tcp = _address.chars().allMatch(Character::isDigit);
+		SocketAddress address = tcp ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(_address))
+				: UnixDomainSocketAddress.of(_address);
+		_channel = tcp ? ServerSocketChannel.open() : ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		_channel.bind(address);
+		System.err.println("Serveur a l'ecoute sur " + _channel.getLocalAddress());
+		try {
+			while (true) {
+				SocketChannel connection = _channel.accept();
+				_connections.execute(() -> serve(connection));
+			}
+		}
+		catch (IOException exception) {
+			if (_channel.isOpen()) throw exception; //Sinon: fermeture du serveur
+		}
+		finally {
+			close();
+		}
+	}
+
+	public void close() {
+		/*
+		 * Ferme la socket d'ecoute (et supprime celle du domaine Unix), puis arrete les threads.
+		 */
+		ServerSocketChannel channel = _channel;
+		if (channel == null) return;
+		try {
+			channel.close();
+			if (!_address.chars().allMatch(Character::isDigit)) Files.deleteIfExists(Path.of(_address));
+		}
+		catch (IOException exception) {
+			System.err.println("Fermeture du serveur : " + exception.getMessage());
+		}
+		_connections.shutdownNow();
+		_solvers.shutdownNow();
+	}
+
+	private void serve(SocketChannel connection) {
+		/*
+		 * Lit les requetes de connection et y repond une a une, jusqu'a sa fermeture par le client.
+		 */
+		try (SocketChannel channel = connection) {
+			BufferedReader input = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+					StandardCharsets.US_ASCII));
+			PrintStream output = new PrintStream(Channels.newOutputStream(channel), false, StandardCharsets.UTF_8);
+			int requests = 0; //Numero de la requete, nom de son resultat
+			for (String line; (line = input.readLine()) != null; ) {
+				if (line.trim().isEmpty()) continue;
+				StringBuilder request = new StringBuilder(line).append('\n');
+				if (line.startsWith("Parking")) { //Format dessine: jusqu'a la ligne vide
+					while ((line = input.readLine()) != null && !line.trim().isEmpty()) request.append(line).append('\n');
+				}
+				output.println(answer(Integer.toString(++requests), request.toString()));
+				output.flush();
+			}
+		}
+		catch (IOException exception) {
+			//Connexion interrompue par le client: ses requetes en cours sont abandonnees
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	String answer(String name, String request) throws InterruptedException {
+		/*
+		 * Resout le Parking decrit par request et retourne la ligne de resultat de name.
+		 */
+		ByteBuffer data = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+		Parking root;
+		try {
+			root = PuzzleParser.isDrawing(data) ? PuzzleParser.parseDrawing(data) : PuzzleParser.parseLine(data, 0, data.limit());
+		}
+		catch (IOException | RuntimeException exception) {
+			return _results.error(name, String.format("requete illisible (%s)", exception.getMessage()));
+		}
+		if (_slideMoves) root = new Parking(root.getContext().withSlideMoves(true), root._carPositions);
+
+		if (!_admissions.tryAcquire()) return _results.error(name, "serveur occupe");
+		try {
+			Parking parking = root;
+			BatchRunner.PuzzleTask task = new BatchRunner.PuzzleTask(name, () -> _results.solve(name, parking));
+			_solvers.execute(task);
+			return task.awaitResult(_results);
+		}
+		finally {
+			_admissions.release();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Ensemble des dispositions deja generees, a raison d'un bit par rang d'une StateRanking: l'ajout d'une
+ * disposition est un test et une mise a un de son bit, sans hachage ni comparaison de cles. Les bits
+ * sont ranges hors du tas Java (ByteBuffer direct), dans des mots de 64 bits; les mots mis a un pendant
+ * une resolution sont retenus pour que la suivante n'ait a effacer qu'eux
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.nio.ByteBuffer; //memoire hors du tas
+import java.nio.ByteOrder; //ordre natif des mots
+import java.nio.LongBuffer; //mots de 64 bits
+import java.util.Arrays; //agrandissement de la liste des mots modifies
+
+public class StateBitmap {
+	static final int DEFAULT_MEGABYTES = 64; //Taille maximale par defaut de l'ensemble de chaque thread
+	static final int MAX_BYTES = 1 << 30; //Taille maximale d'un ByteBuffer direct retenue
+	static final int MIN_BYTES = 1 << 13; //Taille minimale allouee (evite les reallocations des petits problemes)
+	static final int TOUCHED_RATIO = 8; //Au-dela d'un mot modifie sur TOUCHED_RATIO, tous les mots sont effaces
+
+	static volatile int _maxMegabytes = DEFAULT_MEGABYTES; //Taille maximale de l'ensemble de chaque thread (0: hachage seul)
+
+	final LongBuffer _words; //Bits des rangs: rang r = bit r%64 du mot r/64
+	final long _capacity; //Nombre de rangs couverts
+	int[] _touched = new int[1 << 10]; //Mots passes de 0 a une autre valeur depuis le dernier clear
+	int _touchedCount; //Nombre de ces mots, -1 s'ils sont trop nombreux pour etre retenus
+	long _size; //Nombre de bits a un
+
+	public StateBitmap(long bytes) {
+		/*
+		 * Construit un ensemble vide occupant bytes octets (arrondis au mot superieur) hors du tas.
+		 */
+		int words = (int) ((Math.max(MIN_BYTES, Math.min(MAX_BYTES, bytes)) + Long.BYTES-1) / Long.BYTES);
+		_words = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+		_capacity = (long) words * Long.SIZE;
+	}
+
+	static long maxBytes() {
+		/*
+		 * Retourne la taille maximale (en octets) de l'ensemble d'un thread.
+		 */
+		return Math.min(MAX_BYTES, (long) _maxMegabytes << 20);
+	}
+
+	public boolean add(long rank) {
+		/*
+		 * Ajoute le rang rank a l'ensemble. Retourne true s'il est nouveau, false s'il etait deja present.
+		 */
+		int word = (int) (rank >>> 6);
+		long bits = _words.get(word), bit = 1L << rank; //Decalage modulo 64
+		if ((bits & bit) != 0) return false;
+		if (bits == 0) touch(word);
+		_words.put(word, bits | bit);
+		_size++;
+		return true;
+	}
+
+	public boolean contains(long rank) {
+		/*
+		 * Retourne true si le rang rank est present.
+		 */
+		return (_words.get((int) (rank >>> 6)) & (1L << rank)) != 0;
+	}
+
+	private void touch(int word) {
+		/*
+		 * Retient que le mot word n'est plus nul (sauf si trop de mots l'ont deja ete).
+		 */
+		if (_touchedCount < 0) return;
+		if (_touchedCount == _touched.length) {
+			if (_touched.length >= _words.capacity() / TOUCHED_RATIO) {
+				_touchedCount = -1; //Effacement complet au prochain clear
+				return;
+			}
+			_touched = Arrays.copyOf(_touched, _touched.length << 1);
+		}
+		_touched[_touchedCount++] = word;
+	}
+
+	public long size() {
+		/*
+		 * Retourne le nombre de rangs presents.
+		 */
+		return _size;
+	}
+
+	public long capacity() {
+		/*
+		 * Retourne le nombre de rangs couverts.
+		 */
+		return _capacity;
+	}
+
+	public void clear() {
+		/*
+		 * Retire tous les rangs, en n'effacant que les mots modifies s'ils ont ete retenus.
+		 */
+		if (_touchedCount < 0) {
+			for (int word=0; word<_words.capacity(); word++) _words.put(word, 0);
+		}
+		else {
+			for (int i=0; i<_touchedCount; i++) _words.put(_touched[i], 0);
+		}
+		_touchedCount = 0;
+		_size = 0;
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Numerotation parfaite des dispositions atteignables a partir d'un Parking: chaque voiture deplacee par
+ * la recherche (SolverContext._movingCars) reste dans la portion de sa rangee qu'elle peut balayer a
+ * partir de sa position de depart (murs et voitures immobiles la bornent), et les autres voitures ne
+ * bougent pas. Une disposition est donc un nombre en base mixte, dont chaque chiffre est la position
+ * d'une voiture mobile dans sa portion de rangee: son rang, compris entre 0 et _size-1, sert d'index
+ * dans un StateBitmap. Le rang d'un enfant se deduit de celui de son parent sans relire la cle
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class StateRanking {
+	final SolverContext _context; //Probleme numerote
+	final int[] _rootPositions; //Positions de depart (celles des voitures immobiles ne changent pas)
+	final int[] _cars; //Voitures mobiles (chiffres du rang, du poids faible au poids fort)
+	final int[] _lowest, _highest; //Premiere et derniere position de la portion de rangee de chaque voiture mobile
+	final long[] _strides; //Variation du rang pour une position de chaque voiture (0 si immobile)
+	final long _size; //Nombre de rangs (Long.MAX_VALUE s'il ne tient pas dans un long)
+
+	public StateRanking(Parking root) {
+		/*
+		 * Construit la numerotation des dispositions atteignables a partir de root.
+		 */
+		_context = root.getContext();
+		_rootPositions = root._carPositions.clone();
+		_cars = _context._movingCars;
+		_lowest = new int[_cars.length];
+		_highest = new int[_cars.length];
+		_strides = new long[_context._carsCount];
+
+		//Murs et voitures immobiles: cases qu'aucune voiture mobile ne peut traverser
+		int words = _context._words;
+		long[] fixed = _context._walls.clone();
+		boolean[] moving = new boolean[_context._carsCount];
+		for (int carIndex : _cars) moving[carIndex] = true;
+		for (int carIndex=0; carIndex<_context._carsCount; carIndex++) {
+			if (moving[carIndex]) continue;
+			long[] carMasks = _context._carMasks[carIndex];
+			for (int word=0; word<words; word++) fixed[word] |= carMasks[_rootPositions[carIndex]*words+word];
+		}
+
+		//Portion de rangee de chaque voiture mobile (positions contigues a la sienne, sans case fixe) et poids
+		long size = 1;
+		for (int i=0; i<_cars.length; i++) {
+			int carIndex = _cars[i], position = _rootPositions[carIndex];
+			int positionsCount = _context._carMasks[carIndex].length / words;
+			_lowest[i] = _highest[i] = position;
+			while (_lowest[i] > 0 && !overlaps(fixed, carIndex, _lowest[i]-1)) _lowest[i]--;
+			while (_highest[i] < positionsCount-1 && !overlaps(fixed, carIndex, _highest[i]+1)) _highest[i]++;
+			_strides[carIndex] = size;
+			int count = _highest[i] - _lowest[i] + 1;
+			size = size > Long.MAX_VALUE / count ? Long.MAX_VALUE : size * count;
+		}
+		_size = size;
+	}
+
+	private boolean overlaps(long[] cells, int carIndex, int position) {
+		/*
+		 * Retourne true si la voiture carIndex, en position position, occupe une case de cells.
+		 */
+		long[] carMasks = _context._carMasks[carIndex];
+		for (int word=0; word<_context._words; word++) {
+			if ((cells[word] & carMasks[position*_context._words+word]) != 0) return true;
+		}
+		return false;
+	}
+
+	public long rank(long key) {
+		/*
+		 * Retourne le rang de la disposition de cle key (d'un seul mot).
+		 */
+		long positionMask = (1L << _context._bitsPerCar) - 1, rank = 0;
+		for (int i=0; i<_cars.length; i++) {
+			int carIndex = _cars[i];
+			rank += (((key >>> _context._carShifts[carIndex]) & positionMask) - _lowest[i]) * _strides[carIndex];
+		}
+		return rank;
+	}
+
+	public long rank(int[] carPositions) {
+		/*
+		 * Retourne le rang de la disposition carPositions.
+		 */
+		long rank = 0;
+		for (int i=0; i<_cars.length; i++) rank += (carPositions[_cars[i]] - _lowest[i]) * _strides[_cars[i]];
+		return rank;
+	}
+
+	public int[] unrank(long rank, int[] carPositions) {
+		/*
+		 * Ecrit dans carPositions la disposition de rang rank (inverse de rank), et le retourne.
+		 */
+		System.arraycopy(_rootPositions, 0, carPositions, 0, _rootPositions.length);
+		for (int i=0; i<_cars.length; i++) {
+			int carIndex = _cars[i];
+			carPositions[carIndex] = _lowest[i] + (int) (rank / _strides[carIndex] % (_highest[i] - _lowest[i] + 1));
+		}
+		return carPositions;
+	}
+
+	public long childRank(long rank, int carIndex, int move) {
+		/*
+		 * Retourne le rang de la disposition obtenue en deplacant carIndex de move positions a partir de
+		 * celle de rang rank.
+		 */
+		return rank + move * _strides[carIndex];
+	}
+
+	public long bitmapBytes() {
+		/*
+		 * Retourne la memoire (en octets) d'un StateBitmap couvrant tous les rangs: elle est connue avant
+		 * le debut de la recherche, quelle que soit la part de l'espace qu'elle parcourra.
+		 */
+		return _size == Long.MAX_VALUE ? Long.MAX_VALUE : (_size + Long.SIZE-1) / Long.SIZE * Long.BYTES;
+	}
+}
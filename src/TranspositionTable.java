@@ -0,0 +1,89 @@
+/**
+ * Table de transposition de taille fixe pour la recherche IDA*: chaque case retient la cle d'un Parking
+ * et la plus petite profondeur a laquelle il a ete atteint pendant l'iteration en cours. Un Parking se
+ * range dans l'une des deux cases de son emplacement; lorsque les deux sont prises, celle du Parking le
+ * plus profond (dont le developpement est le moins couteux a refaire) est ecrasee. La table perd donc
+ * des Parkings, mais la memoire utilisee ne depend pas du nombre de Parkings rencontres
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //remise a zero des iterations
+
+public class TranspositionTable {
+	static final int ENTRY_BYTES = 8 + 4 + 4; //Taille d'une case: cle, iteration, profondeur
+	static final int MAX_CAPACITY = 1 << 30; //Nombre maximal de cases (taille des tableaux)
+
+	final long[] _keys; //Cle du Parking de chaque case
+	final int[] _iterations; //Iteration ayant rempli chaque case (0: case vide)
+	final int[] _depths; //Profondeur a laquelle ce Parking a ete atteint
+	final int _mask; //Nombre de cases - 2 (puissance de 2): premiere case de chaque emplacement
+	int _iteration; //Iteration en cours
+
+	public TranspositionTable(long bytes) {
+		/*
+		 * Construit une table occupant au plus bytes octets (au moins un emplacement de deux cases).
+		 */
+		int capacity = capacityFor(bytes);
+		_keys = new long[capacity];
+		_iterations = new int[capacity];
+		_depths = new int[capacity];
+		_mask = capacity - 2;
+	}
+
+	static int capacityFor(long bytes) {
+		/*
+		 * Retourne le nombre de cases d'une table occupant au plus bytes octets.
+		 */
+		return (int) Long.highestOneBit(Math.max(2, Math.min(MAX_CAPACITY, bytes / ENTRY_BYTES)));
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre de cases de la table.
+		 */
+		return _keys.length;
+	}
+
+	public void clear() {
+		/*
+		 * Vide la table apres que ses tableaux ont servi d'espace de travail (IDAStarSolver.checkExit).
+		 */
+		Arrays.fill(_iterations, 0);
+		_iteration = 0;
+	}
+
+	public void nextIteration() {
+		/*
+		 * Commence une nouvelle iteration: les cases des iterations precedentes sont considerees vides.
+		 */
+		if (++_iteration == Integer.MAX_VALUE) { //Numeros epuises: on vide reellement la table
+			Arrays.fill(_iterations, 0);
+			_iteration = 1;
+		}
+	}
+
+	public boolean visit(long key, int depth) {
+		/*
+		 * Retourne true si le Parking de cle key a deja ete atteint pendant l'iteration en cours a une
+		 * profondeur inferieure ou egale a depth (son developpement serait redondant). Sinon, le retient
+		 * a la profondeur depth et retourne false.
+		 */
+		int slot = LongHashSet.hash(key) & _mask;
+		for (int other=slot; other<=slot+1; other++) {
+			if (_iterations[other] == _iteration && _keys[other] == key) {
+				if (_depths[other] <= depth) return true;
+				_depths[other] = depth; //Atteint plus tot: son developpement sera refait
+				return false;
+			}
+		}
+		//Case libre (ou d'une iteration precedente), sinon celle du Parking le plus profond
+		if (_iterations[slot] == _iteration && (_iterations[slot+1] != _iteration || _depths[slot+1] >= _depths[slot])) {
+			slot += 1;
+		}
+		_keys[slot] = key;
+		_iterations[slot] = _iteration;
+		_depths[slot] = depth;
+		return false;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Ensemble de cles de plusieurs mots de 64 bits (grands plateaux), a adressage ouvert, sans objets
+ * intermediaires: les cles sont rangees bout a bout dans l'ordre d'ajout, et la table ne contient que
+ * leur numero. Le numero d'une cle (son rang d'ajout) peut ainsi servir d'index, et la cle etre relue
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+import java.util.Arrays; //agrandissement et remplissage des tableaux
+
+public class WideKeySet {
+	static final float MAX_LOAD = 0.5f; //Taux de remplissage maximal avant agrandissement
+
+	final int _words; //Nombre de mots de chaque cle
+	long[] _keys; //Cles dans l'ordre d'ajout, _words mots chacune
+	int[] _slots; //Cases de la table: numero de la cle + 1 (0 = case vide)
+	int _mask; //Taille de la table - 1 (taille puissance de 2)
+	int _size; //Nombre de cles presentes
+	int _resizeAt; //Nombre de cles a partir duquel la table est agrandie
+
+	public WideKeySet(int words) {
+		/*
+		 * Construit un ensemble vide de cles de words mots.
+		 */
+		_words = words;
+		_keys = new long[words << 10];
+		allocate(1 << 11);
+	}
+
+	public int add(long[] key) {
+		/*
+		 * Ajoute la cle key (ses _words premiers mots) a l'ensemble. Retourne son numero si elle est
+		 * nouvelle, -1 si elle etait deja presente.
+		 */
+		int slot = hash(key, 0) & _mask;
+		int current;
+		while ((current = _slots[slot]) != 0) { //Parcourt les cases occupees jusqu'a une case vide
+			if (equals(current-1, key)) return -1;
+			slot = (slot + 1) & _mask;
+		}
+		if ((_size+1)*_words > _keys.length) _keys = Arrays.copyOf(_keys, _keys.length << 1);
+		System.arraycopy(key, 0, _keys, _size*_words, _words);
+		_slots[slot] = _size+1;
+		int number = _size++;
+		if (_size >= _resizeAt) rehash(_slots.length << 1);
+		return number;
+	}
+
+	public long[] key(int number, long[] key) {
+		/*
+		 * Ecrit dans key la cle de numero number, et le retourne.
+		 */
+		System.arraycopy(_keys, number*_words, key, 0, _words);
+		return key;
+	}
+
+	public int size() {
+		/*
+		 * Retourne le nombre de cles presentes.
+		 */
+		return _size;
+	}
+
+	public int capacity() {
+		/*
+		 * Retourne le nombre de cases de la table.
+		 */
+		return _slots.length;
+	}
+
+	public void clear() {
+		/*
+		 * Retire toutes les cles en conservant les tableaux (reutilisables sans reallocation).
+		 */
+		Arrays.fill(_slots, 0);
+		_size = 0;
+	}
+
+	private boolean equals(int number, long[] key) {
+		/*
+		 * Retourne true si la cle de numero number est egale a key.
+		 */
+		int offset = number*_words;
+		for (int word=0; word<_words; word++) {
+			if (_keys[offset+word] != key[word]) return false;
+		}
+		return true;
+	}
+
+	private int hash(long[] keys, int offset) {
+		/*
+		 * Melange les mots de la cle commencant a l'index offset de keys (comme LongHashSet.hash).
+		 */
+		long h = 0;
+		for (int word=0; word<_words; word++) h = (h ^ keys[offset+word]) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void allocate(int capacity) {
+		/*
+		 * Alloue une table vide de capacity cases.
+		 */
+		_slots = new int[capacity];
+		_mask = capacity - 1;
+		_resizeAt = (int) (capacity * MAX_LOAD);
+	}
+
+	private void rehash(int capacity) {
+		/*
+		 * Agrandit la table a capacity cases et y replace toutes les cles (leurs numeros ne changent pas).
+		 */
+		allocate(capacity);
+		for (int number=0; number<_size; number++) {
+			int slot = hash(_keys, number*_words) & _mask;
+			while (_slots[slot] != 0) slot = (slot + 1) & _mask;
+			_slots[slot] = number+1;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Parcours en largeur des Parkings dont la cle compte plusieurs mots de 64 bits (grands plateaux ou
+ * nombreuses voitures). Les cles sont rangees dans un WideKeySet dans l'ordre de decouverte, qui est
+ * aussi celui du PathStore: le numero d'une cle est l'index de son Parking, et chaque niveau du
+ * parcours est un intervalle de numeros (aucune file separee). Tous les algorithmes de recherche se
+ * ramenent a ce parcours, dont la solution est egalement optimale
+ * @author Stanislas Gueniffey
+ * @author Allan Muranovic
+ */
+
+public class WideSolver {
+
+	static Parking solveParking(Parking root) {
+		/*
+		 * Retourne la meilleure solution au probleme du Parking ayant pour racine root, sous la forme d'une
+		 * feuille de l'arbre des deplacements, ou null si aucune solution n'existe (ou si la resolution
+		 * est abandonnee).
+		 */
+		SolverContext context = root.getContext();
+		SolverScratch scratch = SolverScratch.acquire(context); //Tampons du thread, remis a zero
+		int words = context._keyWords;
+		if (scratch._wideParkings == null || scratch._wideParkings._words != words
+				|| scratch._wideParkings.capacity() > SolverScratch.RETAINED_CAPACITY) {
+			scratch._wideParkings = null; //L'ancien ensemble peut etre libere avant l'allocation
+			scratch._wideParkings = new WideKeySet(words);
+		}
+		else {
+			scratch._wideParkings.clear();
+		}
+		WideKeySet allParkings = scratch._wideParkings; //Cles des Parkings generes, numerotees comme paths
+		PathStore paths = scratch._paths; //Parent et deplacement de chaque Parking genere
+		root._index = paths.reset(root);
+		allParkings.add(root._keyWords); //Numero 0, comme l'index de la racine
+		SearchStats.Search stats = SearchStats.begin("bfs"); //Mesures par niveau (null si desactivees)
+
+		//Si le Goal Car est deja libre
+		Parking alreadySolved = root.isSolved(scratch);
+		if (alreadySolved != null) {
+			if (stats != null) stats.end(true);
+			return alreadySolved;
+		}
+
+		//Chaque Parking d'un niveau est recopie dans cursor pour etre developpe
+		Parking cursor = new Parking(context, root._carPositions.clone(), root._key);
+		cursor._keyWords = new long[words];
+		long[] childKey = new long[words]; //Cle de l'enfant examine
+
+		int levelStart = 0, levelEnd = 1; //Numeros des Parkings du niveau en cours
+		while (levelStart < levelEnd) {
+			if (scratch.checkLimits()) break; //Resolution arretee par une de ses limites
+			long generated = 0, visitedBefore = allParkings.size();
+			if (stats != null) stats.beginLevel();
+
+			for (int index=levelStart; index<levelEnd && !scratch.stopped(); index++) {
+				allParkings.key(index, cursor._keyWords);
+				cursor._key = cursor._keyWords[0];
+				context.unpackPositions(cursor._keyWords, 0, cursor._carPositions);
+				cursor._index = index;
+				cursor._movedCar = paths.movedCar(index);
+				int childrenCount = cursor.expand(scratch, cursor._movedCar); //Deplacements canoniques
+				System.arraycopy(cursor._keyWords, 0, childKey, 0, words);
+
+				for (int child=0; child<childrenCount; child++) {
+					int carIndex = scratch._childCars[child], move = scratch._childMoves[child];
+					//Si ce deplacement libere la Goal Car, la solution passe par lui
+					if (child == scratch._goalFreedBy) {
+						if (stats != null) {
+							long visited = allParkings.size();
+							stats.endLevel(levelEnd-levelStart, index-levelStart+1, generated+child,
+									generated+child - (visited-visitedBefore), visited);
+							stats.end(true);
+						}
+						return cursor.solutionThrough(carIndex, move, paths);
+					}
+					//Seul le mot de la voiture deplacee change; une cle nouvelle recoit l'index suivant
+					int word = context._carWords[carIndex];
+					childKey[word] = scratch._childKeys[child];
+					if (allParkings.add(childKey) >= 0) paths.add(index, carIndex, move);
+					childKey[word] = cursor._keyWords[word];
+				}
+				generated += childrenCount;
+			}
+			if (stats != null) {
+				long visited = allParkings.size();
+				stats.endLevel(levelEnd-levelStart, levelEnd-levelStart, generated, generated - (visited-visitedBefore), visited);
+			}
+			levelStart = levelEnd;
+			levelEnd = allParkings.size();
+		}
+
+		if (stats != null) stats.end(false);
+		return null; //Aucune solution trouvee
+	}
+}